@@ -28,9 +28,12 @@ public final class Constants {
   public static final long BEAT_ANIM_OFFSET = 25;
   public static final int TEMPO_MIN = 1;
   public static final int TEMPO_MAX = 500;
+  public static final float TEMPO_STEP_FINE = 0.1f;
   public static final int BEATS_MAX = 20;
   public static final int SUBS_MAX = 10;
+  public static final int VELOCITY_MAX = 127;
   public static final int BOOKMARKS_MAX = 10;
+  public static final int SECTIONS_MAX = 20;
 
   public final static class PREF {
     // General
@@ -46,6 +49,10 @@ public final class Constants {
     public final static String TEMPO = "tempo";
     public final static String BEATS = "beats";
     public final static String SUBDIVISIONS = "subdivisions";
+    public final static String BEAT_VELOCITIES = "beat_velocities";
+    public final static String SUBDIVISION_VELOCITIES = "subdivision_velocities";
+    public final static String VOICES = "voices";
+    public final static String GROUPS = "groups";
     public final static String BEAT_MODE_VIBRATE = "beat_mode_vibrate";
     public final static String USE_SUBS = "use_subdivisions";
     public final static String ALWAYS_VIBRATE = "always_vibrate";
@@ -57,9 +64,15 @@ public final class Constants {
     public final static String FLASH_SCREEN = "flash_screen";
     public final static String KEEP_AWAKE = "keep_awake";
     public final static String SOUND = "sound";
-    public final static String LATENCY = "latency_offset";
+    public final static String LATENCY = "latency_correction";
+    // replaced by the measured output latency, only removed by the migration
+    public final static String LATENCY_OFFSET = "latency_offset";
+    public final static String OUTPUT_LATENCY = "output_latency_";
     public final static String IGNORE_FOCUS = "ignore_focus";
     public final static String GAIN = "gain";
+    public final static String SYNTH_WAVEFORM = "synth_waveform";
+    public final static String SYNTH_FREQUENCY = "synth_frequency_";
+    public final static String SYNTH_DECAY = "synth_decay_";
     public final static String BOOKMARKS = "bookmarks";
     public final static String BIG_LOGO = "big_logo";
 
@@ -69,8 +82,18 @@ public final class Constants {
     public final static String INCREMENTAL_INCREASE = "incremental_increase";
     public final static String INCREMENTAL_INTERVAL = "incremental_interval";
     public final static String INCREMENTAL_UNIT = "incremental_unit";
+    public final static String RAMP_TEMPO = "ramp_tempo";
+    public final static String RAMP_DURATION = "ramp_duration";
+    public final static String RAMP_UNIT = "ramp_unit";
+    public final static String RAMP_EXPONENTIAL = "ramp_exponential";
+    public final static String MUTE_PLAY = "mute_play";
+    public final static String MUTE_MUTE = "mute_mute";
+    public final static String MUTE_RANDOM = "mute_random";
+    public final static String MUTE_HIDE = "mute_hide";
     public final static String TIMER_DURATION = "timer_duration";
     public final static String TIMER_UNIT = "timer_unit";
+    public final static String PROGRAM = "program";
+    public final static String PROGRAM_BARS = "program_bars";
   }
 
   public final static class DEF {
@@ -81,11 +104,17 @@ public final class Constants {
     public static final boolean REDUCE_ANIM = false;
 
     // Metronome
-    public final static int TEMPO = 120;
+    public final static float TEMPO = 120;
     public final static String BEATS = String.join(
         ",", TICK_TYPE.STRONG, TICK_TYPE.NORMAL, TICK_TYPE.NORMAL, TICK_TYPE.NORMAL
     );
     public final static String SUBDIVISIONS = TICK_TYPE.MUTED;
+    // empty velocity lists play all ticks at full velocity
+    public final static String VELOCITIES = "";
+    // additional polyrhythm voices separated by semicolons, none by default
+    public final static String VOICES = "";
+    // pulses of each beat in additive meters, regular meters by default
+    public final static String GROUPS = "";
     public final static boolean BEAT_MODE_VIBRATE = false;
     public final static boolean USE_SUBS = true;
     public final static boolean ALWAYS_VIBRATE = true;
@@ -97,9 +126,14 @@ public final class Constants {
     public final static boolean FLASH_SCREEN = false;
     public final static boolean KEEP_AWAKE = true;
     public final static String SOUND = Constants.SOUND.SINE;
-    public final static long LATENCY = 100;
+    public final static long LATENCY = 0;
     public final static boolean IGNORE_FOCUS = false;
     public final static int GAIN = 0;
+    public final static String SYNTH_WAVEFORM = WAVEFORM.SINE;
+    public final static int SYNTH_FREQUENCY_STRONG = 2000;
+    public final static int SYNTH_FREQUENCY_NORMAL = 1000;
+    public final static int SYNTH_FREQUENCY_SUB = 500;
+    public final static int SYNTH_DECAY = 50;
     public final static boolean BIG_LOGO = false;
 
     // Options
@@ -108,8 +142,19 @@ public final class Constants {
     public final static boolean INCREMENTAL_INCREASE = true;
     public final static int INCREMENTAL_INTERVAL = 1;
     public final static String INCREMENTAL_UNIT = UNIT.BARS;
+    public final static int RAMP_TEMPO = 160;
+    public final static int RAMP_DURATION = 0;
+    public final static String RAMP_UNIT = UNIT.BARS;
+    public final static boolean RAMP_EXPONENTIAL = false;
+    public final static int MUTE_PLAY = 1;
+    public final static int MUTE_MUTE = 0;
+    public final static int MUTE_RANDOM = 0;
+    public final static boolean MUTE_HIDE = false;
     public final static int TIMER_DURATION = 0;
     public final static String TIMER_UNIT = UNIT.BARS;
+    // sections separated by semicolons, no program by default
+    public final static String PROGRAM = "";
+    public final static int PROGRAM_BARS = 4;
   }
 
   public final static class SOUND {
@@ -121,6 +166,14 @@ public final class Constants {
     public final static String BEATBOXING_2 = "beatboxing_2";
     public final static String HANDS = "hands";
     public final static String FOLDING = "folding";
+    public final static String CUSTOM = "custom";
+  }
+
+  public final static class WAVEFORM {
+
+    public final static String SINE = "sine";
+    public final static String SQUARE = "square";
+    public final static String NOISE = "noise";
   }
 
   public final static class TICK_TYPE {
@@ -131,6 +184,14 @@ public final class Constants {
     public final static String MUTED = "muted";
   }
 
+  public final static class TICK_TYPE_ID {
+
+    public final static int NORMAL = 0;
+    public final static int STRONG = 1;
+    public final static int SUB = 2;
+    public final static int MUTED = 3;
+  }
+
   public final static class UNIT {
 
     public final static String BEATS = "beats";
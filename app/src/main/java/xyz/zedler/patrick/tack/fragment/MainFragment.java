@@ -28,6 +28,7 @@ import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -43,9 +44,12 @@ import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.view.animation.LinearInterpolator;
+import android.widget.LinearLayout;
 import android.widget.SeekBar;
 import android.widget.SeekBar.OnSeekBarChangeListener;
 import android.widget.TextView;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts.CreateDocument;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.OptIn;
@@ -68,6 +72,7 @@ import xyz.zedler.patrick.tack.Constants;
 import xyz.zedler.patrick.tack.Constants.DEF;
 import xyz.zedler.patrick.tack.Constants.PREF;
 import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE_ID;
 import xyz.zedler.patrick.tack.Constants.UNIT;
 import xyz.zedler.patrick.tack.R;
 import xyz.zedler.patrick.tack.activity.MainActivity;
@@ -76,8 +81,13 @@ import xyz.zedler.patrick.tack.behavior.SystemBarBehavior;
 import xyz.zedler.patrick.tack.databinding.FragmentMainBinding;
 import xyz.zedler.patrick.tack.drawable.BeatsBgDrawable;
 import xyz.zedler.patrick.tack.drawable.SquigglyProgressDrawable;
+import xyz.zedler.patrick.tack.model.Section;
 import xyz.zedler.patrick.tack.util.DialogUtil;
+import xyz.zedler.patrick.tack.util.ExportUtil;
+import xyz.zedler.patrick.tack.util.ExportUtil.ExportListener;
+import xyz.zedler.patrick.tack.util.FrameTickUtil;
 import xyz.zedler.patrick.tack.util.LogoUtil;
+import xyz.zedler.patrick.tack.util.MetronomeUtil;
 import xyz.zedler.patrick.tack.util.MetronomeUtil.MetronomeListener;
 import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
 import xyz.zedler.patrick.tack.util.OptionsUtil;
@@ -101,6 +111,7 @@ public class MainFragment extends BaseFragment
   private boolean flashScreen, reduceAnimations, isRtl, isLandTablet, bigLogo, showPickerNotLogo;
   private boolean bigTimerSlider;
   private LogoUtil logoUtil, logoCenterUtil;
+  private FrameTickUtil preTickUtil, tickUtil;
   private ValueAnimator fabAnimator;
   private float cornerSizeStop, cornerSizePlay, cornerSizeCurrent;
   private int colorFlashNormal, colorFlashStrong, colorFlashMuted;
@@ -115,6 +126,11 @@ public class MainFragment extends BaseFragment
   private ValueAnimator progressAnimator, progressTransitionAnimator;
   private ValueAnimator beatsCountBadgeAnimator, subsCountBadgeAnimator, optionsBadgeAnimator;
   private ValueAnimator pickerLogoAnimator;
+  // pulses of polyrhythm voices are animated between the ticks of the beats
+  private final Handler voiceHandler = new Handler(Looper.getMainLooper());
+  private final ActivityResultLauncher<String> exportLauncher = registerForActivityResult(
+      new CreateDocument("audio/wav"), this::exportAudio
+  );
 
   @Override
   public View onCreateView(
@@ -128,6 +144,11 @@ public class MainFragment extends BaseFragment
   public void onDestroyView() {
     super.onDestroyView();
 
+    preTickUtil.stop();
+    tickUtil.stop();
+    voiceHandler.removeCallbacksAndMessages(null);
+    getMetronomeUtil().removeTickQueue(preTickUtil.getQueue());
+    getMetronomeUtil().removeTickQueue(tickUtil.getQueue());
     if (fabAnimator != null) {
       fabAnimator.pause();
       fabAnimator.removeAllUpdateListeners();
@@ -165,6 +186,10 @@ public class MainFragment extends BaseFragment
       performHapticClick();
       if (id == R.id.action_settings) {
         activity.navigate(MainFragmentDirections.actionMainToSettings());
+      } else if (id == R.id.action_export) {
+        exportLauncher.launch(
+            "tack_" + MetronomeUtil.getTempoString(getMetronomeUtil().getTempo()) + "bpm.wav"
+        );
       } else if (id == R.id.action_about) {
         activity.navigate(MainFragmentDirections.actionMainToAbout());
       } else if (id == R.id.action_help) {
@@ -352,6 +377,11 @@ public class MainFragment extends BaseFragment
         changeTempo(isRtl ? -tempo : tempo);
       }
 
+      @Override
+      public void onRotateFine(float tempo) {
+        changeTempo(isRtl ? -tempo : tempo);
+      }
+
       @Override
       public void onRotate(float degrees) {
         binding.circleMain.setRotation(
@@ -508,6 +538,9 @@ public class MainFragment extends BaseFragment
     cornerSizePlay = UiUtil.dpToPx(activity, large ? 48 : 28);
     cornerSizeCurrent = cornerSizeStop;
 
+    preTickUtil = new FrameTickUtil(Constants.BEAT_ANIM_OFFSET, this::onPreTick);
+    tickUtil = new FrameTickUtil(0, this::onTick);
+
     updateMetronomeControls();
 
     ViewUtil.setTooltipText(binding.buttonMainAddBeat, R.string.action_add_beat);
@@ -541,6 +574,8 @@ public class MainFragment extends BaseFragment
     stopTimerProgress();
     stopTimerTransitionProgress();
     squiggly.pauseAnimation();
+    preTickUtil.stop();
+    tickUtil.stop();
   }
 
   @Override
@@ -548,6 +583,10 @@ public class MainFragment extends BaseFragment
     super.onResume();
     updateTimerControls();
     updateElapsedDisplay();
+    if (getMetronomeUtil().isPlaying()) {
+      preTickUtil.start();
+      tickUtil.start();
+    }
   }
 
   @Override
@@ -569,6 +608,12 @@ public class MainFragment extends BaseFragment
       return;
     }
     getMetronomeUtil().addListener(this);
+    getMetronomeUtil().addTickQueue(preTickUtil.getQueue());
+    getMetronomeUtil().addTickQueue(tickUtil.getQueue());
+    if (getMetronomeUtil().isPlaying() && isResumed()) {
+      preTickUtil.start();
+      tickUtil.start();
+    }
     optionsUtil.showIfWasShown(savedState);
     tempoTapUtil.showIfWasShown(savedState);
     savedState = null;
@@ -591,6 +636,7 @@ public class MainFragment extends BaseFragment
     updateBeatControls(false);
     updateSubs(getMetronomeUtil().getSubdivisions());
     updateSubControls(false);
+    updateVoices();
 
     binding.scrollHorizMainBookmarks.getViewTreeObserver().addOnGlobalLayoutListener(
         new ViewTreeObserver.OnGlobalLayoutListener() {
@@ -612,7 +658,7 @@ public class MainFragment extends BaseFragment
     updateElapsedDisplay();
     updateOptions(false);
 
-    int tempo = getMetronomeUtil().getTempo();
+    float tempo = getMetronomeUtil().getTempo();
     setTempo(tempo);
     binding.textSwitcherMainTempoTerm.setCurrentText(getTempoTerm(tempo));
 
@@ -635,6 +681,10 @@ public class MainFragment extends BaseFragment
   @Override
   public void onMetronomeStart() {
     activity.runOnUiThread(() -> {
+      if (isResumed()) {
+        preTickUtil.start();
+        tickUtil.start();
+      }
       if (binding != null) {
         beatsBgDrawable.reset();
         if (getMetronomeUtil().getCountIn() > 0) {
@@ -663,6 +713,9 @@ public class MainFragment extends BaseFragment
   @Override
   public void onMetronomeStop() {
     activity.runOnUiThread(() -> {
+      preTickUtil.stop();
+      tickUtil.stop();
+      voiceHandler.removeCallbacksAndMessages(null);
       if (binding != null) {
         beatsBgDrawable.setProgressVisible(false, true);
         if (getMetronomeUtil().isTimerActive()) {
@@ -687,70 +740,151 @@ public class MainFragment extends BaseFragment
     UiUtil.keepScreenAwake(activity, false);
   }
 
-  @Override
-  public void onMetronomePreTick(Tick tick) {
-    activity.runOnUiThread(() -> {
-      if (binding == null) {
-        return;
+  private void onPreTick(Tick tick, long presentationTime) {
+    if (binding == null || isHidden(tick)) {
+      return;
+    }
+    // animation starts before the tick is heard so it peaks in sync
+    long playTime = presentationTime - (tick.time - Constants.BEAT_ANIM_OFFSET);
+    View beat = binding.linearMainBeats.getChildAt(tick.beat - 1);
+    if (beat instanceof BeatView && tick.subdivision == 1) {
+      ((BeatView) beat).setTickType(tick.getTypeName());
+      ((BeatView) beat).beat(playTime);
+      if (tick.beat == 1) {
+        beatVoices(playTime);
+      }
+    }
+    View subdivision = binding.linearMainSubs.getChildAt(tick.subdivision - 1);
+    if (getMetronomeUtil().getSubdivisionsUsed() && subdivision instanceof BeatView) {
+      ((BeatView) subdivision).setTickType(
+          tick.subdivision == 1 ? TICK_TYPE.MUTED : tick.getTypeName()
+      );
+      ((BeatView) subdivision).beat(playTime);
+    }
+  }
+
+  private void beatVoices(long playTime) {
+    voiceHandler.removeCallbacksAndMessages(null);
+    float barMillis = getMetronomeUtil().getBarInterval();
+    for (int i = 0; i < binding.linearMainVoices.getChildCount(); i++) {
+      ViewGroup voice = (ViewGroup) binding.linearMainVoices.getChildAt(i);
+      int pulseCount = voice.getChildCount();
+      for (int pulse = 0; pulse < pulseCount; pulse++) {
+        BeatView beatView = (BeatView) voice.getChildAt(pulse);
+        long pulsePlayTime = playTime - (long) (barMillis * pulse / pulseCount);
+        if (pulsePlayTime >= 0) {
+          beatView.beat(pulsePlayTime);
+        } else {
+          voiceHandler.postDelayed(beatView::beat, -pulsePlayTime);
+        }
+      }
+    }
+  }
+
+  private void onTick(Tick tick, long presentationTime) {
+    if (binding == null) {
+      return;
+    }
+    boolean isHidden = isHidden(tick);
+    if (flashScreen && !isHidden) {
+      int color;
+      switch (tick.type) {
+        case TICK_TYPE_ID.STRONG:
+          color = colorFlashStrong;
+          break;
+        case TICK_TYPE_ID.SUB:
+        case TICK_TYPE_ID.MUTED:
+          color = colorFlashMuted;
+          break;
+        default:
+          color = colorFlashNormal;
+          break;
       }
-      View beat = binding.linearMainBeats.getChildAt(tick.beat - 1);
-      if (beat instanceof BeatView && tick.subdivision == 1) {
-        ((BeatView) beat).setTickType(tick.type);
-        ((BeatView) beat).beat();
+      View flashContainer = isLandTablet && binding.containerMainEnd != null
+          ? binding.containerMainEnd
+          : binding.coordinatorContainer;
+      flashContainer.setBackgroundColor(color);
+      flashContainer.postDelayed(() -> {
+        if (binding != null) {
+          flashContainer.setBackgroundColor(colorFlashMuted);
+        }
+      }, 100); // flash screen for 100 milliseconds
+    }
+    if (tick.subdivision == 1) {
+      long interval = tick.beatInterval;
+      if (!isHidden) {
+        logoUtil.nextBeat(interval, presentationTime - tick.time);
+        if (bigLogo) {
+          logoCenterUtil.nextBeat(interval, presentationTime - tick.time);
+        }
       }
-      View subdivision = binding.linearMainSubs.getChildAt(tick.subdivision - 1);
-      if (getMetronomeUtil().getSubdivisionsUsed() && subdivision instanceof BeatView) {
-        ((BeatView) subdivision).setTickType(tick.subdivision == 1 ? TICK_TYPE.MUTED : tick.type);
-        ((BeatView) subdivision).beat();
+      if (getMetronomeUtil().getTimerUnit().equals(UNIT.BARS)) {
+        updateTimerDisplay();
+        if (tick.beat == 1 && getMetronomeUtil().isTimerActive()
+            && !getMetronomeUtil().isCountingIn()) {
+          // synced with the bars counted by the engine, the remaining time depends on the tempo
+          updateTimerProgress(1, getMetronomeUtil().getTimerIntervalRemaining(), true, true);
+        }
       }
-    });
+    }
+  }
+
+  private boolean isHidden(Tick tick) {
+    // muted ticks of the trainer are only shown if the beats should stay visible
+    return tick.muted && getMetronomeUtil().getMuteHide();
   }
 
   @Override
-  public void onMetronomeTick(Tick tick) {
+  public void onMetronomeTempoChanged(float tempoOld, float tempoNew) {
+    activity.runOnUiThread(() -> setTempo(tempoOld, tempoNew));
+  }
+
+  @Override
+  public void onMetronomeSectionChanged(int section) {
     activity.runOnUiThread(() -> {
       if (binding == null) {
         return;
       }
-      if (flashScreen) {
-        int color;
-        switch (tick.type) {
-          case TICK_TYPE.STRONG:
-            color = colorFlashStrong;
-            break;
-          case TICK_TYPE.SUB:
-          case TICK_TYPE.MUTED:
-            color = colorFlashMuted;
-            break;
-          default:
-            color = colorFlashNormal;
-            break;
-        }
-        View flashContainer = isLandTablet && binding.containerMainEnd != null
-            ? binding.containerMainEnd
-            : binding.coordinatorContainer;
-        flashContainer.setBackgroundColor(color);
-        flashContainer.postDelayed(() -> {
-          if (binding != null) {
-            flashContainer.setBackgroundColor(colorFlashMuted);
-          }
-        }, 100); // flash screen for 100 milliseconds
-      }
-      if (tick.subdivision == 1) {
-        logoUtil.nextBeat(getMetronomeUtil().getInterval());
-        if (bigLogo) {
-          logoCenterUtil.nextBeat(getMetronomeUtil().getInterval());
-        }
-        if (getMetronomeUtil().getTimerUnit().equals(UNIT.BARS)) {
-          updateTimerDisplay();
-        }
+      Section[] sections = getMetronomeUtil().getSections();
+      if (section >= 0 && section < sections.length) {
+        // only shown, the regular setup is not changed by the program
+        showSection(sections[section]);
+      } else {
+        updateBeats(getMetronomeUtil().getBeats());
+        updateSubs(getMetronomeUtil().getSubdivisions());
+        updateVoices();
+        showTempo(getMetronomeUtil().getTempo());
       }
     });
   }
 
   @Override
-  public void onMetronomeTempoChanged(int tempoOld, int tempoNew) {
-    activity.runOnUiThread(() -> setTempo(tempoOld, tempoNew));
+  public void onMetronomeRampTempoChanged(float tempo) {
+    activity.runOnUiThread(() -> {
+      if (binding != null) {
+        // only shown, the set tempo is where the next ramp starts
+        showTempo(tempo);
+      }
+    });
+  }
+
+  private void showSection(Section section) {
+    updateBeats(section.getBeats());
+    updateSubs(section.getSubdivisions());
+    int[] velocities = new int[
+        Math.max(section.getBeats().length, section.getSubdivisions().length)
+    ];
+    Arrays.fill(velocities, Constants.VELOCITY_MAX);
+    updateVelocities(binding.linearMainBeats, velocities);
+    updateVelocities(binding.linearMainSubs, velocities);
+    voiceHandler.removeCallbacksAndMessages(null);
+    binding.linearMainVoices.setVisibility(View.GONE);
+    showTempo(section.getTempo());
+  }
+
+  private void showTempo(float tempo) {
+    binding.textMainTempo.setText(MetronomeUtil.getTempoString(tempo));
+    binding.textSwitcherMainTempoTerm.setCurrentText(getTempoTerm(tempo));
   }
 
   @Override
@@ -836,6 +970,11 @@ public class MainFragment extends BaseFragment
           performHapticClick();
           getMetronomeUtil().setBeat(beatView.getIndex(), beatView.nextTickType());
         });
+        beatView.setOnLongClickListener(beat -> {
+          performHapticClick();
+          getMetronomeUtil().setBeatVelocity(beatView.getIndex(), beatView.nextVelocity());
+          return true;
+        });
         beatView.setReduceAnimations(reduceAnimations);
         binding.linearMainBeats.addView(beatView);
         ViewUtil.centerScrollContentIfNotFullWidth(binding.scrollHorizMainBeats);
@@ -866,6 +1005,13 @@ public class MainFragment extends BaseFragment
           performHapticClick();
           getMetronomeUtil().setSubdivision(beatView.getIndex(), beatView.nextTickType());
         });
+        beatView.setOnLongClickListener(subdivision -> {
+          performHapticClick();
+          getMetronomeUtil().setSubdivisionVelocity(
+              beatView.getIndex(), beatView.nextVelocity()
+          );
+          return true;
+        });
         beatView.setReduceAnimations(reduceAnimations);
         binding.linearMainSubs.addView(beatView);
         ViewUtil.centerScrollContentIfNotFullWidth(binding.scrollHorizMainSubs);
@@ -936,7 +1082,8 @@ public class MainFragment extends BaseFragment
     } else if (id == R.id.button_main_bookmark) {
       ViewUtil.startIcon(binding.buttonMainBookmark.getIcon());
       performHapticClick();
-      int tempo = getMetronomeUtil().getTempo();
+      // bookmarks and shortcuts are only available for whole tempos
+      int tempo = (int) getMetronomeUtil().getTempo();
       if (bookmarks.size() < Constants.BOOKMARKS_MAX && !bookmarks.contains(tempo)) {
         int position = 0;
         while (position < bookmarks.size() && bookmarks.get(position) < tempo) {
@@ -979,12 +1126,13 @@ public class MainFragment extends BaseFragment
     }
   }
 
-  private void updateBeats(String[] beats) {
+  public void updateBeats(String[] beats) {
     String[] currentBeats = new String[binding.linearMainBeats.getChildCount()];
     for (int i = 0; i < binding.linearMainBeats.getChildCount(); i++) {
       currentBeats[i] = String.valueOf(binding.linearMainBeats.getChildAt(i));
     }
     if (Arrays.equals(beats, currentBeats)) {
+      updateVelocities(binding.linearMainBeats, getMetronomeUtil().getBeatVelocities());
       return;
     }
     binding.linearMainBeats.removeAllViews();
@@ -997,16 +1145,22 @@ public class MainFragment extends BaseFragment
         performHapticClick();
         getMetronomeUtil().setBeat(beatView.getIndex(), beatView.nextTickType());
       });
+      beatView.setOnLongClickListener(beat -> {
+        performHapticClick();
+        getMetronomeUtil().setBeatVelocity(beatView.getIndex(), beatView.nextVelocity());
+        return true;
+      });
       beatView.setReduceAnimations(reduceAnimations);
       binding.linearMainBeats.addView(beatView);
     }
+    updateVelocities(binding.linearMainBeats, getMetronomeUtil().getBeatVelocities());
     ViewUtil.centerScrollContentIfNotFullWidth(binding.scrollHorizMainBeats);
 
     updateBeatControls(true);
   }
 
   @OptIn(markerClass = ExperimentalBadgeUtils.class)
-  private void updateBeatControls(boolean animated) {
+  public void updateBeatControls(boolean animated) {
     if (beatsCountBadgeAnimator != null) {
       beatsCountBadgeAnimator.pause();
       beatsCountBadgeAnimator.removeAllUpdateListeners();
@@ -1069,6 +1223,7 @@ public class MainFragment extends BaseFragment
       currentSubs[i] = String.valueOf(binding.linearMainSubs.getChildAt(i));
     }
     if (Arrays.equals(subdivisions, currentSubs)) {
+      updateVelocities(binding.linearMainSubs, getMetronomeUtil().getSubdivisionVelocities());
       return;
     }
     binding.linearMainSubs.removeAllViews();
@@ -1083,15 +1238,57 @@ public class MainFragment extends BaseFragment
           performHapticClick();
           getMetronomeUtil().setSubdivision(beatView.getIndex(), beatView.nextTickType());
         });
+        beatView.setOnLongClickListener(beat -> {
+          performHapticClick();
+          getMetronomeUtil().setSubdivisionVelocity(
+              beatView.getIndex(), beatView.nextVelocity()
+          );
+          return true;
+        });
       }
       beatView.setReduceAnimations(reduceAnimations);
       binding.linearMainSubs.addView(beatView);
     }
+    updateVelocities(binding.linearMainSubs, getMetronomeUtil().getSubdivisionVelocities());
     ViewUtil.centerScrollContentIfNotFullWidth(binding.scrollHorizMainSubs, true);
 
     updateSubControls(true);
   }
 
+  public void updateVoices() {
+    voiceHandler.removeCallbacksAndMessages(null);
+    binding.linearMainVoices.removeAllViews();
+    String[][] voices = getMetronomeUtil().getVoices();
+    for (int i = 0; i < voices.length; i++) {
+      int voice = i;
+      LinearLayout row = new LinearLayout(activity);
+      row.setOrientation(LinearLayout.HORIZONTAL);
+      row.setGravity(Gravity.CENTER_HORIZONTAL);
+      for (int pulse = 0; pulse < voices[voice].length; pulse++) {
+        BeatView beatView = new BeatView(activity);
+        beatView.setTickType(voices[voice][pulse]);
+        beatView.setIndex(pulse);
+        beatView.setOnClickListener(v -> {
+          performHapticClick();
+          getMetronomeUtil().setVoicePulse(voice, beatView.getIndex(), beatView.nextTickType());
+        });
+        beatView.setReduceAnimations(reduceAnimations);
+        row.addView(beatView);
+      }
+      binding.linearMainVoices.addView(row);
+    }
+    binding.linearMainVoices.setVisibility(voices.length > 0 ? View.VISIBLE : View.GONE);
+  }
+
+  private void updateVelocities(ViewGroup container, int[] velocities) {
+    for (int i = 0; i < container.getChildCount(); i++) {
+      View child = container.getChildAt(i);
+      if (child instanceof BeatView && i < velocities.length) {
+        ((BeatView) child).setVelocity(velocities[i]);
+      }
+    }
+  }
+
   @OptIn(markerClass = ExperimentalBadgeUtils.class)
   public void updateSubControls(boolean animated) {
     if (subsCountBadgeAnimator != null) {
@@ -1266,6 +1463,15 @@ public class MainFragment extends BaseFragment
     if (isTimerActive) {
       modifierCount += 1;
     }
+    if (getMetronomeUtil().isRampActive()) {
+      modifierCount += 1;
+    }
+    if (getMetronomeUtil().isMuteActive()) {
+      modifierCount += 1;
+    }
+    if (getMetronomeUtil().isProgramActive()) {
+      modifierCount += 1;
+    }
     boolean show = modifierCount > 0;
     optionsBadge.setNumber(modifierCount);
     if (animated) {
@@ -1352,14 +1558,17 @@ public class MainFragment extends BaseFragment
   }
 
   private void refreshBookmarks(boolean alignActiveOrCenter, boolean animated) {
-    binding.buttonMainBookmark.setEnabled(!bookmarks.contains(getMetronomeUtil().getTempo()));
+    float tempo = getMetronomeUtil().getTempo();
+    binding.buttonMainBookmark.setEnabled(
+        MetronomeUtil.isTempoWhole(tempo) && !bookmarks.contains((int) tempo)
+    );
     for (int i = 0; i < binding.chipGroupMainBookmarks.getChildCount(); i++) {
       Chip chip = (Chip) binding.chipGroupMainBookmarks.getChildAt(i);
       if (chip == null) {
         continue;
       }
       Object tag = chip.getTag();
-      boolean isActive = tag != null && ((int) tag) == getMetronomeUtil().getTempo();
+      boolean isActive = tag != null && ((int) tag) == tempo;
       int colorBg = isActive
           ? ResUtil.getColor(activity, R.attr.colorTertiaryContainer)
           : Color.TRANSPARENT;
@@ -1406,25 +1615,25 @@ public class MainFragment extends BaseFragment
     }
   }
 
-  private void changeTempo(int difference) {
-    int tempoNew = getMetronomeUtil().getTempo() + difference;
+  private void changeTempo(float difference) {
+    float tempoNew = getMetronomeUtil().getTempo() + difference;
     setTempo(tempoNew);
     if (tempoNew >= Constants.TEMPO_MIN && tempoNew <= Constants.TEMPO_MAX) {
       performHapticTick();
     }
   }
 
-  public void setTempo(int tempo) {
+  public void setTempo(float tempo) {
     setTempo(getMetronomeUtil().getTempo(), tempo);
   }
 
-  private void setTempo(int tempoOld, int tempoNew) {
+  private void setTempo(float tempoOld, float tempoNew) {
     tempoNew = Math.min(Math.max(tempoNew, Constants.TEMPO_MIN), Constants.TEMPO_MAX);
     getMetronomeUtil().setTempo(tempoNew);
     if (binding == null) {
       return;
     }
-    binding.textMainTempo.setText(String.valueOf(tempoNew));
+    binding.textMainTempo.setText(MetronomeUtil.getTempoString(tempoNew));
     String termNew = getTempoTerm(tempoNew);
     if (!termNew.equals(getTempoTerm(tempoOld))) {
       boolean isFaster = tempoNew > tempoOld;
@@ -1441,8 +1650,8 @@ public class MainFragment extends BaseFragment
   }
 
   private void setButtonStates() {
-    int tempo = getMetronomeUtil().getTempo();
-    binding.buttonMainLess.setEnabled(tempo > 1);
+    float tempo = getMetronomeUtil().getTempo();
+    binding.buttonMainLess.setEnabled(tempo > Constants.TEMPO_MIN);
     binding.buttonMainMore.setEnabled(tempo < Constants.TEMPO_MAX);
   }
 
@@ -1582,7 +1791,34 @@ public class MainFragment extends BaseFragment
     snackbar.show();
   }
 
-  public String getTempoTerm(int tempo) {
+  private void exportAudio(@Nullable Uri uri) {
+    if (uri == null) {
+      return;
+    }
+    ExportUtil exportUtil = new ExportUtil(activity);
+    Snackbar snackbar = activity.getSnackbar(R.string.msg_exporting, Snackbar.LENGTH_INDEFINITE);
+    snackbar.setText(getString(R.string.msg_exporting, 0));
+    snackbar.setAction(getString(R.string.action_cancel), view -> exportUtil.cancel());
+    showSnackbar(snackbar);
+    exportUtil.export(getMetronomeUtil(), uri, new ExportListener() {
+      @Override
+      public void onExportProgress(float fraction) {
+        snackbar.setText(activity.getString(R.string.msg_exporting, (int) (fraction * 100)));
+      }
+
+      @Override
+      public void onExportFinished(boolean success) {
+        snackbar.dismiss();
+        if (success) {
+          activity.showSnackbar(R.string.msg_exported);
+        } else if (!exportUtil.isCancelled()) {
+          activity.showSnackbar(R.string.msg_export_failed);
+        }
+      }
+    });
+  }
+
+  public String getTempoTerm(float tempo) {
     int resId;
     if (tempo < 60) {
       resId = R.string.label_tempo_largo;
@@ -20,6 +20,7 @@
 package xyz.zedler.patrick.tack.fragment;
 
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
@@ -31,6 +32,8 @@ import android.view.ViewGroup;
 import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.LinearLayout;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts.OpenDocument;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.StyleRes;
@@ -50,17 +53,20 @@ import xyz.zedler.patrick.tack.Constants.EXTRA;
 import xyz.zedler.patrick.tack.Constants.PREF;
 import xyz.zedler.patrick.tack.Constants.SOUND;
 import xyz.zedler.patrick.tack.Constants.THEME;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
+import xyz.zedler.patrick.tack.Constants.WAVEFORM;
 import xyz.zedler.patrick.tack.R;
 import xyz.zedler.patrick.tack.activity.MainActivity;
 import xyz.zedler.patrick.tack.behavior.ScrollBehavior;
 import xyz.zedler.patrick.tack.behavior.SystemBarBehavior;
 import xyz.zedler.patrick.tack.databinding.FragmentSettingsBinding;
 import xyz.zedler.patrick.tack.util.DialogUtil;
+import xyz.zedler.patrick.tack.util.FrameTickUtil;
 import xyz.zedler.patrick.tack.util.HapticUtil;
+import xyz.zedler.patrick.tack.util.ImportUtil;
 import xyz.zedler.patrick.tack.util.LocaleUtil;
 import xyz.zedler.patrick.tack.util.MetronomeUtil.MetronomeListener;
 import xyz.zedler.patrick.tack.util.MetronomeUtil.MetronomeListenerAdapter;
-import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
 import xyz.zedler.patrick.tack.util.ShortcutUtil;
 import xyz.zedler.patrick.tack.util.UiUtil;
 import xyz.zedler.patrick.tack.util.ViewUtil;
@@ -77,6 +83,11 @@ public class SettingsFragment extends BaseFragment
   private DialogUtil dialogUtilReset, dialogUtilSound;
   private Drawable itemBgFlash;
   private boolean flashScreen;
+  // beat type edited by the synthesizer sliders
+  private String synthTickType = TICK_TYPE.STRONG;
+  private final ActivityResultLauncher<String[]> importSoundLauncher = registerForActivityResult(
+      new OpenDocument(), this::importSound
+  );
 
   @Override
   public View onCreateView(
@@ -248,21 +259,17 @@ public class SettingsFragment extends BaseFragment
 
     dialogUtilSound = new DialogUtil(activity, "sound");
 
-    MetronomeListener latencyListener = new MetronomeListenerAdapter() {
-      @Override
-      public void onMetronomeTick(Tick tick) {
-        activity.runOnUiThread(() -> {
-          if (binding != null && flashScreen) {
-            binding.linearSettingsLatency.setBackground(itemBgFlash);
-            binding.linearSettingsLatency.postDelayed(() -> {
-              if (binding != null) {
-                binding.linearSettingsLatency.setBackground(null);
-              }
-            }, 100);
+    FrameTickUtil latencyTickUtil = new FrameTickUtil(0, (tick, presentationTime) -> {
+      if (binding != null && flashScreen) {
+        binding.linearSettingsLatency.setBackground(itemBgFlash);
+        binding.linearSettingsLatency.postDelayed(() -> {
+          if (binding != null) {
+            binding.linearSettingsLatency.setBackground(null);
           }
-        });
+        }, 100);
       }
-
+    });
+    MetronomeListener latencyListener = new MetronomeListenerAdapter() {
       @Override
       public void onMetronomeConnectionMissing() {
         activity.showSnackbar(R.string.msg_connection_lost);
@@ -275,15 +282,20 @@ public class SettingsFragment extends BaseFragment
         flashScreen = true;
         getMetronomeUtil().savePlayingState();
         getMetronomeUtil().addListener(latencyListener);
+        getMetronomeUtil().addTickQueue(latencyTickUtil.getQueue());
+        latencyTickUtil.start();
         getMetronomeUtil().setUpLatencyCalibration();
       }
 
       @Override
       public void onStopTrackingTouch(@NonNull Slider slider) {
         flashScreen = false;
+        // restored first, a program is only compiled when playback starts
+        getMetronomeUtil().setToPreferences();
         getMetronomeUtil().restorePlayingState();
         getMetronomeUtil().removeListener(latencyListener);
-        getMetronomeUtil().setToPreferences();
+        getMetronomeUtil().removeTickQueue(latencyTickUtil.getQueue());
+        latencyTickUtil.stop();
       }
     });
     binding.sliderSettingsLatency.setLabelFormatter(
@@ -296,6 +308,14 @@ public class SettingsFragment extends BaseFragment
     binding.sliderSettingsGain.setLabelFormatter(
         value -> getString(R.string.label_db, (int) value)
     );
+    binding.sliderSettingsSynthFrequency.setLabelFormatter(
+        value -> getString(R.string.label_hz, (int) value)
+    );
+    binding.sliderSettingsSynthDecay.setLabelFormatter(
+        value -> getString(
+            R.string.label_ms, String.format(activity.getLocale(), "%.0f", value)
+        )
+    );
 
     binding.linearSettingsAlwaysVibrate.setVisibility(
         activity.getHapticUtil().hasVibrator() ? View.VISIBLE : View.GONE
@@ -353,28 +373,8 @@ public class SettingsFragment extends BaseFragment
   }
 
   public void updateMetronomeSettings() {
-    Map<String, String> labels = new LinkedHashMap<>();
-    labels.put(SOUND.SINE, getString(R.string.settings_sound_sine));
-    labels.put(SOUND.WOOD, getString(R.string.settings_sound_wood));
-    labels.put(SOUND.MECHANICAL, getString(R.string.settings_sound_mechanical));
-    labels.put(SOUND.BEATBOXING_1, getString(R.string.settings_sound_beatboxing_1));
-    labels.put(SOUND.BEATBOXING_2, getString(R.string.settings_sound_beatboxing_2));
-    labels.put(SOUND.HANDS, getString(R.string.settings_sound_hands));
-    labels.put(SOUND.FOLDING, getString(R.string.settings_sound_folding));
-    ArrayList<String> sounds = new ArrayList<>(labels.keySet());
-    String[] items = labels.values().toArray(new String[]{});
-    int init = sounds.indexOf(getMetronomeUtil().getSound());
-    if (init == -1) {
-      init = 0;
-      getSharedPrefs().edit().remove(PREF.SOUND).apply();
-    }
-    binding.textSettingsSound.setText(items[init]);
-    dialogUtilSound.createSingleChoice(
-        R.string.settings_sound, items, init, (dialog, which) -> {
-          performHapticClick();
-          getMetronomeUtil().setSound(sounds.get(which));
-          binding.textSettingsSound.setText(items[which]);
-        });
+    updateSoundSetting();
+    updateSynthSettings();
     dialogUtilSound.showIfWasShown(savedState);
 
     binding.sliderSettingsLatency.removeOnChangeListener(this);
@@ -429,6 +429,148 @@ public class SettingsFragment extends BaseFragment
     binding.switchSettingsKeepAwake.setOnCheckedChangeListener(this);
   }
 
+  private void updateSoundSetting() {
+    Map<String, String> labels = new LinkedHashMap<>();
+    labels.put(SOUND.SINE, getString(R.string.settings_sound_sine));
+    labels.put(SOUND.WOOD, getString(R.string.settings_sound_wood));
+    labels.put(SOUND.MECHANICAL, getString(R.string.settings_sound_mechanical));
+    labels.put(SOUND.BEATBOXING_1, getString(R.string.settings_sound_beatboxing_1));
+    labels.put(SOUND.BEATBOXING_2, getString(R.string.settings_sound_beatboxing_2));
+    labels.put(SOUND.HANDS, getString(R.string.settings_sound_hands));
+    labels.put(SOUND.FOLDING, getString(R.string.settings_sound_folding));
+    if (ImportUtil.hasCustomSound(activity)) {
+      labels.put(SOUND.CUSTOM, getString(R.string.settings_sound_custom));
+    }
+    ArrayList<String> sounds = new ArrayList<>(labels.keySet());
+    ArrayList<String> items = new ArrayList<>(labels.values());
+    // last item opens the file picker instead of selecting a sound
+    items.add(getString(R.string.settings_sound_import));
+    int init = sounds.indexOf(getMetronomeUtil().getSound());
+    if (init == -1) {
+      init = 0;
+      getSharedPrefs().edit().remove(PREF.SOUND).apply();
+    }
+    binding.textSettingsSound.setText(items.get(init));
+    dialogUtilSound.createSingleChoice(
+        R.string.settings_sound, items.toArray(new String[]{}), init, (dialog, which) -> {
+          performHapticClick();
+          if (which == sounds.size()) {
+            dialog.dismiss();
+            importSoundLauncher.launch(new String[]{"audio/*"});
+            // recreated to keep the current sound checked
+            updateSoundSetting();
+            return;
+          }
+          getMetronomeUtil().setSound(sounds.get(which));
+          binding.textSettingsSound.setText(items.get(which));
+          updateSynthVisibility();
+        });
+  }
+
+  private void updateSynthSettings() {
+    updateSynthVisibility();
+
+    int idWaveform;
+    switch (getMetronomeUtil().getSynthWaveform()) {
+      case WAVEFORM.SQUARE:
+        idWaveform = R.id.button_settings_synth_square;
+        break;
+      case WAVEFORM.NOISE:
+        idWaveform = R.id.button_settings_synth_noise;
+        break;
+      default:
+        idWaveform = R.id.button_settings_synth_sine;
+        break;
+    }
+    binding.toggleSettingsSynthWaveform.clearOnButtonCheckedListeners();
+    binding.toggleSettingsSynthWaveform.check(idWaveform);
+    binding.toggleSettingsSynthWaveform.addOnButtonCheckedListener(
+        (group, checkedId, isChecked) -> {
+          if (!isChecked) {
+            return;
+          }
+          String waveform;
+          if (checkedId == R.id.button_settings_synth_square) {
+            waveform = WAVEFORM.SQUARE;
+          } else if (checkedId == R.id.button_settings_synth_noise) {
+            waveform = WAVEFORM.NOISE;
+          } else {
+            waveform = WAVEFORM.SINE;
+          }
+          getMetronomeUtil().setSynthWaveform(waveform);
+          performHapticClick();
+          ViewUtil.startIcon(binding.imageSettingsSynth);
+        });
+
+    int idTick;
+    switch (synthTickType) {
+      case TICK_TYPE.NORMAL:
+        idTick = R.id.button_settings_synth_normal;
+        break;
+      case TICK_TYPE.SUB:
+        idTick = R.id.button_settings_synth_sub;
+        break;
+      default:
+        idTick = R.id.button_settings_synth_strong;
+        break;
+    }
+    binding.toggleSettingsSynthTick.clearOnButtonCheckedListeners();
+    binding.toggleSettingsSynthTick.check(idTick);
+    binding.toggleSettingsSynthTick.addOnButtonCheckedListener(
+        (group, checkedId, isChecked) -> {
+          if (!isChecked) {
+            return;
+          }
+          if (checkedId == R.id.button_settings_synth_normal) {
+            synthTickType = TICK_TYPE.NORMAL;
+          } else if (checkedId == R.id.button_settings_synth_sub) {
+            synthTickType = TICK_TYPE.SUB;
+          } else {
+            synthTickType = TICK_TYPE.STRONG;
+          }
+          performHapticClick();
+          updateSynthSliders();
+        });
+
+    updateSynthSliders();
+  }
+
+  private void updateSynthSliders() {
+    binding.sliderSettingsSynthFrequency.removeOnChangeListener(this);
+    binding.sliderSettingsSynthFrequency.setValue(
+        getMetronomeUtil().getSynthFrequency(synthTickType)
+    );
+    binding.sliderSettingsSynthFrequency.addOnChangeListener(this);
+
+    binding.sliderSettingsSynthDecay.removeOnChangeListener(this);
+    binding.sliderSettingsSynthDecay.setValue(getMetronomeUtil().getSynthDecay(synthTickType));
+    binding.sliderSettingsSynthDecay.addOnChangeListener(this);
+  }
+
+  private void updateSynthVisibility() {
+    // parameters only apply to the generated sound
+    boolean isSynth = getMetronomeUtil().getSound().equals(SOUND.SINE);
+    binding.linearSettingsSynth.setVisibility(isSynth ? View.VISIBLE : View.GONE);
+  }
+
+  private void importSound(@Nullable Uri uri) {
+    if (uri == null) {
+      return;
+    }
+    new ImportUtil(activity).importSound(uri, success -> {
+      if (success) {
+        getMetronomeUtil().setSound(SOUND.CUSTOM);
+        if (binding != null) {
+          updateSoundSetting();
+          updateSynthVisibility();
+        }
+        activity.showSnackbar(R.string.msg_sound_imported);
+      } else {
+        activity.showSnackbar(R.string.msg_sound_import_failed);
+      }
+    });
+  }
+
   @Override
   public void onClick(View v) {
     int id = v.getId();
@@ -545,6 +687,14 @@ public class SettingsFragment extends BaseFragment
       getMetronomeUtil().setGain((int) value);
       ViewUtil.startIcon(binding.imageSettingsGain);
       performHapticSegmentTick(slider, false);
+    } else if (id == R.id.slider_settings_synth_frequency) {
+      getMetronomeUtil().setSynthFrequency(synthTickType, (int) value);
+      ViewUtil.startIcon(binding.imageSettingsSynthFrequency);
+      performHapticSegmentTick(slider, false);
+    } else if (id == R.id.slider_settings_synth_decay) {
+      getMetronomeUtil().setSynthDecay(synthTickType, (int) value);
+      ViewUtil.startIcon(binding.imageSettingsSynthDecay);
+      performHapticSegmentTick(slider, false);
     }
   }
 
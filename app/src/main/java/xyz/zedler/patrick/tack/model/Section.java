@@ -0,0 +1,90 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+public class Section {
+
+  // fields are separated by pipes, tick types by commas
+  private static final String SEPARATOR = "\\|";
+
+  private final float tempo;
+  private final String[] beats, subdivisions;
+  private final String sound;
+  private final int bars;
+
+  public Section(
+      float tempo, String[] beats, String[] subdivisions, String sound, int bars
+  ) {
+    this.tempo = tempo;
+    this.beats = beats;
+    this.subdivisions = subdivisions;
+    this.sound = sound;
+    this.bars = bars;
+  }
+
+  @Nullable
+  public static Section fromString(String section) {
+    String[] parts = section.split(SEPARATOR);
+    if (parts.length != 5) {
+      return null;
+    }
+    try {
+      return new Section(
+          Float.parseFloat(parts[0]),
+          parts[1].split(","),
+          parts[2].split(","),
+          parts[3],
+          Math.max(1, Integer.parseInt(parts[4]))
+      );
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public float getTempo() {
+    return tempo;
+  }
+
+  public String[] getBeats() {
+    return beats;
+  }
+
+  public String[] getSubdivisions() {
+    return subdivisions;
+  }
+
+  public String getSound() {
+    return sound;
+  }
+
+  public int getBars() {
+    return bars;
+  }
+
+  @NonNull
+  @Override
+  public String toString() {
+    return tempo + "|" + String.join(",", beats) + "|" + String.join(",", subdivisions)
+        + "|" + sound + "|" + bars;
+  }
+}
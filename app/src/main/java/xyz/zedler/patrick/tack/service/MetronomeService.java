@@ -51,6 +51,8 @@ public class MetronomeService extends Service {
 
     notificationUtil = new NotificationUtil(this);
     metronomeUtil = new MetronomeUtil(this, true);
+    // keep the audio engine prepared between start and stop for a fast first click
+    metronomeUtil.setKeepAudioWarm(true);
     Log.d(TAG, "onCreate: service created");
   }
 
@@ -67,7 +69,9 @@ public class MetronomeService extends Service {
   public int onStartCommand(Intent intent, int flags, int startId) {
     if (intent != null && intent.getAction() != null) {
       if (intent.getAction().equals(ACTION.START)) {
-        metronomeUtil.setTempo(intent.getIntExtra(EXTRA.TEMPO, metronomeUtil.getTempo()));
+        if (intent.hasExtra(EXTRA.TEMPO)) {
+          metronomeUtil.setTempo(intent.getIntExtra(EXTRA.TEMPO, (int) metronomeUtil.getTempo()));
+        }
         metronomeUtil.start();
       } else if (intent.getAction().equals(ACTION.STOP)) {
         metronomeUtil.stop();
@@ -81,6 +85,7 @@ public class MetronomeService extends Service {
   @Override
   public IBinder onBind(Intent intent) {
     stopForeground();
+    metronomeUtil.prepareAudio();
     return binder;
   }
 
@@ -89,6 +94,7 @@ public class MetronomeService extends Service {
     super.onRebind(intent);
 
     stopForeground();
+    metronomeUtil.prepareAudio();
   }
 
   @Override
@@ -20,68 +20,117 @@
 package xyz.zedler.patrick.tack.util;
 
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.media.AudioAttributes;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
 import android.media.AudioFocusRequest;
 import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.media.AudioManager.OnAudioFocusChangeListener;
+import android.media.AudioTimestamp;
 import android.media.AudioTrack;
-import android.media.audiofx.LoudnessEnhancer;
-import android.os.Build;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.NonNull;
-import androidx.annotation.RawRes;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.charset.StandardCharsets;
-import xyz.zedler.patrick.tack.Constants.SOUND;
-import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
-import xyz.zedler.patrick.tack.R;
+import androidx.annotation.RequiresApi;
 import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.TickTable;
 
 public class AudioUtil implements OnAudioFocusChangeListener {
 
   private static final String TAG = AudioUtil.class.getSimpleName();
   private static final boolean DEBUG = false;
 
-  public static final int SAMPLE_RATE_IN_HZ = 48000;
-  private static final int SILENCE_CHUNK_SIZE = 8000;
-  private static final int DATA_CHUNK_SIZE = 8;
-  private static final byte[] DATA_MARKER = "data".getBytes(StandardCharsets.US_ASCII);
+  // rate of the bundled sounds, used if the device does not report its native output rate
+  public static final int DEFAULT_SAMPLE_RATE = 48000;
+  private static final int DEFAULT_FRAMES_PER_BURST = 256;
+  // cached bar data is collected into writes of at least this duration to reduce wakeups
+  private static final int MIN_WRITE_MILLIS = 50;
+  // duration the low-latency mode renders ahead of the playback position
+  private static final int RENDER_AHEAD_MILLIS = 30;
+  // timestamps are polled often until they are stable, then rarely as recommended
+  private static final long TIMESTAMP_INTERVAL_INITIAL = 100;
+  private static final long TIMESTAMP_INTERVAL = 5000;
+  private static final long TIMESTAMP_STABILIZATION = 2000;
+  // startup of the track is not representative for the output latency
+  private static final long MEASUREMENT_DELAY = 500;
+  // a prepared track is kept this long after stopping before its resources are released
+  private static final long WARM_TIMEOUT = 30000;
+  // start waits at most this long for sounds which are still being loaded
+  private static final long SOUND_LOAD_TIMEOUT = 1000;
+
+  // native output of the device, rendering at its rate avoids resampling in the mixer
+  private static volatile int sampleRate, framesPerBurst;
 
   private final Context context;
   private final AudioManager audioManager;
   private final AudioListener listener;
+  private final RenderUtil renderUtil;
+  private final SoundUtil soundUtil;
+  private final StreamUtil streamUtil;
+  private final LatencyUtil latencyUtil;
+  private final AudioTimestamp timestamp = new AudioTimestamp();
+  private final Handler releaseHandler = new Handler(Looper.getMainLooper());
+  private final Runnable releaseRunnable = this::release;
   private AudioTrack track;
-  private LoudnessEnhancer loudnessEnhancer;
-  private float[] tickStrong, tickNormal, tickSub;
-  private int gain;
-  private boolean playing, muted, ignoreFocus;
-  private final float[] silence = new float[SILENCE_CHUNK_SIZE];
+  private long trackFrames, playStartTime, startRequestTime, headPositionBase;
+  private long timestampFrame, timestampTime, timestampPolled, measureStartTime;
+  private boolean hasTimestamp;
+  private volatile boolean routeChanged;
+  // set while play waits for the track and sounds, releases in the meantime are skipped
+  private volatile boolean starting;
+  private AudioDeviceCallback deviceCallback;
+  private boolean playing, lowLatency, ignoreFocus, keepWarm;
+  private final int renderAheadSize;
 
   public AudioUtil(@NonNull Context context, @NonNull AudioListener listener) {
     this.context = context;
     this.listener = listener;
     audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    initOutputProperties(audioManager);
+    int minWriteSize = getBurstAlignedSize(sampleRate * MIN_WRITE_MILLIS / 1000);
+    renderAheadSize = getBurstAlignedSize(sampleRate * RENDER_AHEAD_MILLIS / 1000);
+    renderUtil = new RenderUtil();
+    soundUtil = new SoundUtil(context, renderUtil);
+    streamUtil = new StreamUtil(renderUtil, minWriteSize, this::writeAudio);
+    latencyUtil = new LatencyUtil(context);
   }
 
-  public void play() {
+  public void play(long requestTime) {
+    // a pending release is cancelled before the prepared track is reused
+    starting = true;
+    releaseHandler.removeCallbacks(releaseRunnable);
+    prepare();
+    soundUtil.awaitSounds(SOUND_LOAD_TIMEOUT);
+    startRequestTime = requestTime;
     playing = true;
-    track = getTrack();
-    loudnessEnhancer = new LoudnessEnhancer(track.getAudioSessionId());
-    try {
-      loudnessEnhancer.setTargetGain(gain * 100);
-      loudnessEnhancer.setEnabled(gain > 0);
-    } catch (RuntimeException e) {
-      Log.e(TAG, "play: failed to initialize LoudnessEnhancer: ", e);
-    }
+    starting = false;
+    resetStream();
+    // a reused track continues counting frames from its previous session
+    headPositionBase = track.getPlaybackHeadPosition() & 0xFFFFFFFFL;
     track.play();
+    playStartTime = SystemClock.uptimeMillis();
+    measureStartTime = playStartTime;
+    routeChanged = true;
+    if (VERSION.SDK_INT >= VERSION_CODES.M) {
+      deviceCallback = new AudioDeviceCallback() {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+          routeChanged = true;
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+          routeChanged = true;
+        }
+      };
+      audioManager.registerAudioDeviceCallback(deviceCallback, null);
+    }
 
     if (ignoreFocus) {
       return;
@@ -100,29 +149,79 @@ public class AudioUtil implements OnAudioFocusChangeListener {
     }
   }
 
+  public boolean isPlaying() {
+    return playing;
+  }
+
+  private void resetStream() {
+    // non-blocking writes are cheap, each period is written as soon as the previous one is
+    streamUtil.reset(lowLatency);
+    trackFrames = 0;
+    hasTimestamp = false;
+    timestampPolled = 0;
+  }
+
   public void stop() {
     playing = false;
-    if (track != null) {
-      if (track.getState() == AudioTrack.STATE_INITIALIZED) {
+    synchronized (this) {
+      if (track != null && track.getState() == AudioTrack.STATE_INITIALIZED) {
         track.stop();
+        track.flush();
       }
-      track.flush();
-      track.release();
     }
-    if (loudnessEnhancer != null) {
-      try {
-        loudnessEnhancer.release();
-      } catch (RuntimeException e) {
-        Log.e(TAG, "stop: failed to release LoudnessEnhancer resources: ", e);
-      }
-      loudnessEnhancer = null;
+    if (keepWarm) {
+      releaseHandler.postDelayed(releaseRunnable, WARM_TIMEOUT);
+    } else {
+      release();
+    }
+    if (VERSION.SDK_INT >= VERSION_CODES.M && deviceCallback != null) {
+      audioManager.unregisterAudioDeviceCallback(deviceCallback);
+      deviceCallback = null;
     }
+    latencyUtil.save();
     if (!ignoreFocus) {
       audioManager.abandonAudioFocus(this);
     }
     listener.onAudioStop();
   }
 
+  public synchronized void prepare() {
+    // track creation dominates the time to the first click
+    if (track != null) {
+      return;
+    }
+    lowLatency = isLowLatencySupported();
+    if (VERSION.SDK_INT >= VERSION_CODES.O && lowLatency) {
+      track = getLowLatencyTrack(renderAheadSize);
+    } else {
+      track = getTrack();
+    }
+  }
+
+  public void warmUp() {
+    if (playing) {
+      return;
+    }
+    prepare();
+    releaseHandler.removeCallbacks(releaseRunnable);
+    releaseHandler.postDelayed(releaseRunnable, WARM_TIMEOUT);
+  }
+
+  public synchronized void release() {
+    releaseHandler.removeCallbacks(releaseRunnable);
+    if (playing || starting) {
+      return;
+    }
+    if (track != null) {
+      track.release();
+      track = null;
+    }
+  }
+
+  public void setKeepWarm(boolean keepWarm) {
+    this.keepWarm = keepWarm;
+  }
+
   @Override
   public void onAudioFocusChange(int focusChange) {
     if (focusChange == AudioManager.AUDIOFOCUS_GAIN) {
@@ -139,85 +238,120 @@ public class AudioUtil implements OnAudioFocusChangeListener {
     }
   }
 
-  public void tick(Tick tick, int tempo, int subdivisionCount) {
-    writeTickPeriod(tick, tempo, subdivisionCount);
+  public void tick(Tick tick, float tempo, TickTable table, int tickInBar, int[][] voices) {
+    streamUtil.tick(tick, tempo, table, tickInBar, voices);
   }
 
-  public void setSound(String sound) {
-    int resIdNormal, resIdStrong, resIdSub;
-    Pitch pitchNormal = Pitch.NORMAL;
-    Pitch pitchStrong = Pitch.HIGH;
-    Pitch pitchSub = Pitch.LOW;
-    switch (sound) {
-      case SOUND.WOOD:
-        resIdNormal = R.raw.wood;
-        resIdStrong = R.raw.wood;
-        resIdSub = R.raw.wood;
-        break;
-      case SOUND.MECHANICAL:
-        resIdNormal = R.raw.mechanical_tick;
-        resIdStrong = R.raw.mechanical_ding;
-        resIdSub = R.raw.mechanical_knock;
-        pitchStrong = Pitch.NORMAL;
-        pitchSub = Pitch.NORMAL;
-        break;
-      case SOUND.BEATBOXING_1:
-        resIdNormal = R.raw.beatbox_snare1;
-        resIdStrong = R.raw.beatbox_kick1;
-        resIdSub = R.raw.beatbox_hihat1;
-        pitchStrong = Pitch.NORMAL;
-        pitchSub = Pitch.NORMAL;
-        break;
-      case SOUND.BEATBOXING_2:
-        resIdNormal = R.raw.beatbox_snare2;
-        resIdStrong = R.raw.beatbox_kick2;
-        resIdSub = R.raw.beatbox_hihat2;
-        pitchStrong = Pitch.NORMAL;
-        pitchSub = Pitch.NORMAL;
-        break;
-      case SOUND.HANDS:
-        resIdNormal = R.raw.hands_hit;
-        resIdStrong = R.raw.hands_clap;
-        resIdSub = R.raw.hands_snap;
-        pitchStrong = Pitch.NORMAL;
-        pitchSub = Pitch.NORMAL;
-        break;
-      case SOUND.FOLDING:
-        resIdNormal = R.raw.folding_knock;
-        resIdStrong = R.raw.folding_fold;
-        resIdSub = R.raw.folding_tap;
-        pitchStrong = Pitch.NORMAL;
-        pitchSub = Pitch.NORMAL;
-        break;
-      default:
-        resIdNormal = R.raw.sine;
-        resIdStrong = R.raw.sine;
-        resIdSub = R.raw.sine;
-        break;
+  public boolean writeTails() {
+    // called until it returns true, non-blocking writes continue when there is room again
+    return streamUtil.writeTails();
+  }
+
+  public boolean isReadyForTick() {
+    if (!lowLatency) {
+      return true;
     }
-    tickNormal = loadAudio(resIdNormal, pitchNormal);
-    tickStrong = loadAudio(resIdStrong, pitchStrong);
-    tickSub = loadAudio(resIdSub, pitchSub);
+    // finish the current period first, then stay within the render-ahead budget
+    return streamUtil.writeOutput() && getBufferedFrames() < renderAheadSize;
   }
 
-  public void setGain(int gain) {
-    this.gain = gain;
-    if (loudnessEnhancer != null) {
-      try {
-        loudnessEnhancer.setTargetGain(gain * 100);
-        loudnessEnhancer.setEnabled(gain > 0);
-      } catch (RuntimeException e) {
-        Log.e(TAG, "setGain: failed to set target gain: ", e);
-      }
+  public long getRenderWaitMillis() {
+    // wake up when half of the budget is played
+    return Math.max(1, getMillisFromFrames(getBufferedFrames() - renderAheadSize / 2));
+  }
+
+  public long getWrittenFrames() {
+    return streamUtil.getWrittenFrames();
+  }
+
+  public long getFrameTime(long frame) {
+    // uptime at which the frame will be heard, measured by the track if possible
+    updateTimestamp();
+    if (hasTimestamp) {
+      return timestampTime + getMillisFromFrames(frame - timestampFrame);
+    } else {
+      return playStartTime + getMillisFromFrames(frame) + latencyUtil.getLatency();
+    }
+  }
+
+  public static long getMillisFromFrames(long frames) {
+    return frames * 1000 / getSampleRate();
+  }
+
+  public static int getSampleRate() {
+    return sampleRate > 0 ? sampleRate : DEFAULT_SAMPLE_RATE;
+  }
+
+  public static int getFramesPerBurst() {
+    return framesPerBurst > 0 ? framesPerBurst : DEFAULT_FRAMES_PER_BURST;
+  }
+
+  private static synchronized void initOutputProperties(AudioManager audioManager) {
+    // queried once per process, cached samples are rendered at this rate
+    if (sampleRate > 0) {
+      return;
+    }
+    int rate = DEFAULT_SAMPLE_RATE;
+    int burst = DEFAULT_FRAMES_PER_BURST;
+    try {
+      rate = Integer.parseInt(
+          audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE)
+      );
+      burst = Integer.parseInt(
+          audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER)
+      );
+    } catch (NumberFormatException e) {
+      Log.e(TAG, "initOutputProperties: output properties not available: ", e);
     }
+    framesPerBurst = burst > 0 ? burst : DEFAULT_FRAMES_PER_BURST;
+    sampleRate = rate > 0 ? rate : DEFAULT_SAMPLE_RATE;
+    if (DEBUG) {
+      Log.i(TAG, "initOutputProperties: native output is " + sampleRate + " Hz with "
+          + framesPerBurst + " frames per burst");
+    }
+  }
+
+  private static int getBurstAlignedSize(int frames) {
+    // whole bursts match the period of the mixer which consumes the data
+    int burst = getFramesPerBurst();
+    return Math.max(1, (frames + burst - 1) / burst) * burst;
+  }
+
+  public void setSoundSet(int soundSet) {
+    // called on the audio thread at the first tick of a program section
+    renderUtil.setSoundSet(soundSet);
+  }
+
+  public void setSound(String sound) {
+    soundUtil.setSound(sound);
+  }
+
+  public void setProgramSounds(String[] sounds) {
+    soundUtil.setProgramSounds(sounds);
+  }
+
+  public void setSynthWaveform(String waveform) {
+    soundUtil.setSynthWaveform(waveform);
+  }
+
+  public void setSynthFrequency(String tickType, int frequency) {
+    soundUtil.setSynthFrequency(tickType, frequency);
+  }
+
+  public void setSynthDecay(String tickType, int decay) {
+    soundUtil.setSynthDecay(tickType, decay);
+  }
+
+  public void setGain(int gain) {
+    renderUtil.setGain(gain);
   }
 
   public int getGain() {
-    return gain;
+    return renderUtil.getGain();
   }
 
   public void setMuted(boolean muted) {
-    this.muted = muted;
+    renderUtil.setMuted(muted);
   }
 
   public void setIgnoreFocus(boolean ignore) {
@@ -228,53 +362,84 @@ public class AudioUtil implements OnAudioFocusChangeListener {
     return ignoreFocus;
   }
 
-  private void writeTickPeriod(Tick tick, int tempo, int subdivisionCount) {
-    float[] tickSound = muted ? silence : getTickSound(tick.type);
-    int periodSize = 60 * SAMPLE_RATE_IN_HZ / tempo / subdivisionCount;
-    int sizeWritten = writeNextAudioData(tickSound, periodSize, 0);
-    if (DEBUG) {
-      Log.v(TAG, "writeTickPeriod: wrote tick sound for " + tick);
+  private void updateTimestamp() {
+    if (!playing) {
+      return;
     }
-    writeSilenceUntilPeriodFinished(sizeWritten, periodSize);
-  }
-
-  private void writeSilenceUntilPeriodFinished(int previousSizeWritten, int periodSize) {
-    int sizeWritten = previousSizeWritten;
-    while (sizeWritten < periodSize) {
-      sizeWritten += writeNextAudioData(silence, periodSize, sizeWritten);
-      if (DEBUG) {
-        Log.v(TAG, "writeSilenceUntilPeriodFinished: wrote silence");
+    long now = SystemClock.uptimeMillis();
+    if (routeChanged) {
+      routeChanged = false;
+      AudioDeviceInfo routedDevice = null;
+      if (VERSION.SDK_INT >= VERSION_CODES.N) {
+        routedDevice = track.getRoutedDevice();
+      }
+      if (latencyUtil.updateRoute(routedDevice)) {
+        // measure again for the new output
+        hasTimestamp = false;
+        measureStartTime = now;
       }
     }
+    boolean isStable = hasTimestamp && now - measureStartTime > TIMESTAMP_STABILIZATION;
+    long interval = isStable ? TIMESTAMP_INTERVAL : TIMESTAMP_INTERVAL_INITIAL;
+    if (now - timestampPolled < interval) {
+      return;
+    }
+    timestampPolled = now;
+    try {
+      if (track.getTimestamp(timestamp) && timestamp.framePosition > headPositionBase) {
+        // nanoTime uses the same monotonic clock as uptime
+        timestampFrame = timestamp.framePosition - headPositionBase;
+        timestampTime = timestamp.nanoTime / 1_000_000;
+        hasTimestamp = true;
+        if (now - measureStartTime > MEASUREMENT_DELAY) {
+          // offset of the measured playback from the ideal stream clock
+          latencyUtil.addMeasurement(
+              timestampTime - playStartTime - getMillisFromFrames(timestampFrame)
+          );
+        }
+      }
+    } catch (IllegalStateException e) {
+      Log.e(TAG, "updateTimestamp: failed to get timestamp: ", e);
+    }
   }
 
-  private int writeNextAudioData(float[] data, int periodSize, int sizeWritten) {
-    int size = Math.min(data.length, periodSize - sizeWritten);
-    if (playing) {
-      writeAudio(track, data, size);
-    }
-    return size;
-  }
-
-  private float[] getTickSound(String tickType) {
-    switch (tickType) {
-      case TICK_TYPE.STRONG:
-        return tickStrong;
-      case TICK_TYPE.SUB:
-        return tickSub;
-      case TICK_TYPE.MUTED:
-        return silence;
-      default:
-        return tickNormal;
+  private void addTrackFrames(int frames) {
+    if (DEBUG && trackFrames == 0) {
+      Log.i(TAG, "addTrackFrames: first frames written "
+          + (SystemClock.uptimeMillis() - startRequestTime) + "ms after start request");
     }
+    trackFrames += frames;
   }
 
-  private static AudioTrack getTrack() {
-    AudioFormat audioFormat = new AudioFormat.Builder()
-        .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
-        .setSampleRate(SAMPLE_RATE_IN_HZ)
-        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+  private int getBufferedFrames() {
+    // playback head position is an unsigned 32-bit frame counter
+    long headPosition = (track.getPlaybackHeadPosition() & 0xFFFFFFFFL) - headPositionBase;
+    return (int) (trackFrames - headPosition);
+  }
+
+  private boolean isLowLatencySupported() {
+    return VERSION.SDK_INT >= VERSION_CODES.O && context.getPackageManager().hasSystemFeature(
+        PackageManager.FEATURE_AUDIO_LOW_LATENCY
+    );
+  }
+
+  @RequiresApi(api = VERSION_CODES.O)
+  private static AudioTrack getLowLatencyTrack(int bufferFrames) {
+    // whole bursts for the render-ahead budget instead of the generic minimum buffer size
+    AudioTrack track = new AudioTrack.Builder()
+        .setAudioAttributes(getAttributes())
+        .setAudioFormat(getFormat())
+        .setBufferSizeInBytes(bufferFrames * Float.BYTES)
+        .setTransferMode(AudioTrack.MODE_STREAM)
+        .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
         .build();
+    // the fast mixer may allocate more, only the requested part is filled
+    track.setBufferSizeInFrames(bufferFrames);
+    return track;
+  }
+
+  private static AudioTrack getTrack() {
+    AudioFormat audioFormat = getFormat();
     return new AudioTrack(
         getAttributes(),
         audioFormat,
@@ -286,6 +451,14 @@ public class AudioUtil implements OnAudioFocusChangeListener {
     );
   }
 
+  private static AudioFormat getFormat() {
+    return new AudioFormat.Builder()
+        .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+        .setSampleRate(getSampleRate())
+        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+        .build();
+  }
+
   private static AudioAttributes getAttributes() {
     return new AudioAttributes.Builder()
         .setUsage(AudioAttributes.USAGE_MEDIA)
@@ -293,98 +466,26 @@ public class AudioUtil implements OnAudioFocusChangeListener {
         .build();
   }
 
-  private float[] loadAudio(@RawRes int resId, Pitch pitch) {
-    try (InputStream stream = context.getResources().openRawResource(resId)) {
-      return adjustPitch(readDataFromWavFloat(stream), pitch);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  private float[] adjustPitch(float[] originalData, Pitch pitch) {
-    if (pitch == Pitch.HIGH) {
-      float[] newData = new float[originalData.length / 2];
-      for (int i = 0; i < newData.length; i++) {
-        newData[i] = originalData[i * 2];
-      }
-      return newData;
-    } else if (pitch == Pitch.LOW) {
-      float[] newData = new float[originalData.length * 2];
-      for (int i = 0, j = 0; i < originalData.length; i++, j += 2) {
-        newData[j] = originalData[i];
-        newData[j + 1] = originalData[i];
-      }
-      return newData;
-    } else {
-      return originalData;
+  private int writeAudio(float[] data, int offset, int size) {
+    if (!playing) {
+      // stopped in the meantime, the rest of the stream is discarded
+      return 0;
     }
-  }
-
-  private void writeAudio(AudioTrack track, float[] data, int size) {
     try {
-      int result = track.write(data, 0, size, AudioTrack.WRITE_BLOCKING);
+      int result = track.write(
+          data, offset, size,
+          lowLatency ? AudioTrack.WRITE_NON_BLOCKING : AudioTrack.WRITE_BLOCKING
+      );
       if (result < 0) {
         stop();
         throw new IllegalStateException("Error code: " + result);
       }
+      addTrackFrames(result);
+      return result;
     } catch (Exception e) {
       Log.e(TAG, "writeAudio: failed to play audion data", e);
-    }
-  }
-
-  private static float[] readDataFromWavFloat(InputStream input) throws IOException {
-    byte[] content;
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-      content = input.readAllBytes();
-    } else {
-      content = readInputStreamToBytes(input);
-    }
-    int indexOfDataMarker = getIndexOfDataMarker(content);
-    if (indexOfDataMarker < 0) {
-      throw new RuntimeException("Could not find data marker in the content");
-    }
-    int startOfSound = indexOfDataMarker + DATA_CHUNK_SIZE;
-    if (startOfSound > content.length) {
-      throw new RuntimeException("Too short data chunk");
-    }
-    ByteBuffer byteBuffer = ByteBuffer.wrap(
-        content, startOfSound, content.length - startOfSound
-    );
-    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-    FloatBuffer floatBuffer = byteBuffer.asFloatBuffer();
-    float[] data = new float[floatBuffer.remaining()];
-    floatBuffer.get(data);
-    return data;
-  }
-
-  private static byte[] readInputStreamToBytes(InputStream input) throws IOException {
-    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-    int read;
-    byte[] data = new byte[4096];
-    while ((read = input.read(data, 0, data.length)) != -1) {
-      buffer.write(data, 0, read);
-    }
-    return buffer.toByteArray();
-  }
-
-  private static int getIndexOfDataMarker(byte[] array) {
-    if (DATA_MARKER.length == 0) {
       return 0;
     }
-    outer:
-    for (int i = 0; i < array.length - DATA_MARKER.length + 1; i++) {
-      for (int j = 0; j < DATA_MARKER.length; j++) {
-        if (array[i + j] != DATA_MARKER[j]) {
-          continue outer;
-        }
-      }
-      return i;
-    }
-    return -1;
-  }
-
-  private enum Pitch {
-    NORMAL, HIGH, LOW
   }
 
   public interface AudioListener {
@@ -0,0 +1,370 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import xyz.zedler.patrick.tack.Constants;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
+import xyz.zedler.patrick.tack.Constants.UNIT;
+import xyz.zedler.patrick.tack.model.Section;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.MuteTrainer;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.Program;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.Ramp;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.TickTable;
+import xyz.zedler.patrick.tack.util.WavUtil.WavWriter;
+
+public class ExportUtil {
+
+  private static final String TAG = ExportUtil.class.getSimpleName();
+
+  // length of the export if the timer is not active
+  private static final int DEFAULT_BARS = 16;
+  // progress is reported in steps instead of for every tick
+  private static final int PROGRESS_STEPS = 100;
+  // the file is written in large chunks, nothing depends on the write timing
+  private static final int WRITE_MILLIS = 250;
+  // rendering is not time-critical, but fails instead of writing a file without its sounds
+  private static final long SOUND_LOAD_TIMEOUT = 30000;
+
+  private final Context context;
+  // rendering is not time-critical, exports from different screens are queued
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private volatile boolean cancelled;
+
+  public ExportUtil(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  public void export(
+      @NonNull MetronomeUtil metronomeUtil, @NonNull Uri uri, @NonNull ExportListener listener
+  ) {
+    // copied on the calling thread, later changes do not affect the running export
+    Setup setup = new Setup(metronomeUtil);
+    cancelled = false;
+    executor.execute(() -> {
+      boolean success;
+      try (ParcelFileDescriptor descriptor = openFile(uri)) {
+        try (
+            FileOutputStream stream = new FileOutputStream(descriptor.getFileDescriptor());
+            WavWriter writer = new WavWriter(stream.getChannel(), AudioUtil.getSampleRate())
+        ) {
+          success = render(setup, writer, listener);
+        }
+      } catch (IOException | RuntimeException e) {
+        Log.e(TAG, "export: failed to export to " + uri + ": ", e);
+        success = false;
+      }
+      if (!success) {
+        deleteFile(uri);
+      }
+      boolean exported = success;
+      mainHandler.post(() -> listener.onExportFinished(exported));
+    });
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  private boolean render(Setup setup, WavWriter writer, ExportListener listener) {
+    // rendered by itself, nothing of the playback output is needed for a file
+    RenderUtil renderUtil = new RenderUtil();
+    renderUtil.setGain(setup.gain);
+    SoundUtil soundUtil = new SoundUtil(context, renderUtil);
+    soundUtil.setSynthWaveform(setup.synthWaveform);
+    for (int i = 0; i < Setup.SYNTH_TICK_TYPES.length; i++) {
+      soundUtil.setSynthFrequency(Setup.SYNTH_TICK_TYPES[i], setup.synthFrequencies[i]);
+      soundUtil.setSynthDecay(Setup.SYNTH_TICK_TYPES[i], setup.synthDecays[i]);
+    }
+    soundUtil.setSound(setup.sound);
+    soundUtil.setProgramSounds(setup.programSounds);
+    if (!soundUtil.awaitSounds(SOUND_LOAD_TIMEOUT)) {
+      // a file full of silence is not exported
+      Log.e(TAG, "render: sounds could not be loaded");
+      return false;
+    }
+    FileOutput output = new FileOutput(writer);
+    StreamUtil streamUtil = new StreamUtil(
+        renderUtil, AudioUtil.getSampleRate() * WRITE_MILLIS / 1000, output
+    );
+    streamUtil.reset(false);
+
+    // same tick generation as the metronome, but paced by the file writes only
+    Program program = setup.program;
+    int programSection = 0;
+    if (program != null) {
+      renderUtil.setSoundSet(1);
+    }
+    TickTable table = program != null ? program.tables[0] : setup.tickTable;
+    int[][] voiceTypes = program != null ? program.voiceTypes : setup.voiceTypes;
+    // the count-in is played with the first section of a program
+    long countInTicks = (long) setup.countIn * table.size;
+    // programs end with their last section instead of the timer
+    boolean isBarLength = program != null || setup.lengthUnit.equals(UNIT.BARS);
+    long lengthTicks = program != null
+        ? program.getEndTick()
+        : countInTicks + (long) setup.length * table.size;
+    long lengthFrames = getFrames(setup.length, setup.lengthUnit);
+    long incrementalFrames = getFrames(setup.incrementalInterval, setup.incrementalUnit);
+    long nextIncrementalFrame = incrementalFrames;
+    long countInFrames = 0;
+    float tempo = program != null ? program.tempos[0] : setup.tempo;
+    // programs define the tempo of each section themselves
+    Ramp ramp = setup.rampDuration > 0 && program == null
+        ? new Ramp(
+            setup.tempo, setup.rampTempo, setup.rampDuration, setup.rampUnit, setup.rampExponential
+        )
+        : null;
+    boolean isIncremental = setup.incrementalAmount > 0 && setup.incrementalInterval > 0
+        && program == null;
+    MuteTrainer muteTrainer = setup.muteMute > 0 || setup.muteRandom > 0
+        ? new MuteTrainer(setup.mutePlay, setup.muteMute, setup.muteRandom)
+        : null;
+    int progress = 0;
+    Tick tick = new Tick();
+    int tickInBar = 0;
+    // sections may have different bar lengths, bars are counted instead of derived
+    long barIndex = -1;
+    for (long index = 0; !cancelled && !output.failed; index++) {
+      long frame = streamUtil.getWrittenFrames();
+      boolean isCountIn = index < countInTicks;
+      if (index == countInTicks) {
+        countInFrames = frame;
+      }
+      long frameAfterCountIn = frame - countInFrames;
+      if (isBarLength ? index >= lengthTicks : !isCountIn && frameAfterCountIn >= lengthFrames) {
+        break;
+      }
+      if (program != null && index == program.startTicks[programSection + 1]) {
+        // exactly at the end of the previous section's last period
+        programSection++;
+        renderUtil.setSoundSet(programSection + 1);
+        table = program.tables[programSection];
+        tempo = program.tempos[programSection];
+      }
+      if (tickInBar == 0) {
+        barIndex++;
+      }
+      if (ramp != null && !isCountIn) {
+        tempo = ramp.getTempo();
+        ramp.advance(tempo, table, tickInBar);
+      } else if (isIncremental && !isCountIn) {
+        float change = setup.incrementalAmount * (setup.incrementalIncrease ? 1 : -1);
+        if (setup.incrementalUnit.equals(UNIT.BARS)) {
+          long incrementalBar = barIndex - setup.countIn;
+          if (tickInBar == 0 && incrementalBar >= setup.incrementalInterval
+              && incrementalBar % setup.incrementalInterval == 0) {
+            tempo = getTempo(tempo + change);
+          }
+        } else if (frameAfterCountIn >= nextIncrementalFrame) {
+          tempo = getTempo(tempo + change);
+          nextIncrementalFrame += incrementalFrames;
+        }
+      }
+      tick.set(
+          index,
+          table.beats[tickInBar],
+          table.subdivisions[tickInBar],
+          table.types[tickInBar],
+          table.velocities[tickInBar],
+          frame
+      );
+      if (muteTrainer != null && !isCountIn) {
+        tick.muted = muteTrainer.isMuted(barIndex - setup.countIn, tick.subdivision);
+      }
+      streamUtil.tick(tick, tempo, table, tickInBar, voiceTypes);
+      tickInBar = table.getNext(tickInBar);
+
+      float fraction;
+      if (isBarLength) {
+        fraction = (float) index / lengthTicks;
+      } else {
+        fraction = isCountIn ? 0 : (float) frameAfterCountIn / lengthFrames;
+      }
+      if ((int) (fraction * PROGRESS_STEPS) > progress) {
+        progress = (int) (fraction * PROGRESS_STEPS);
+        mainHandler.post(() -> listener.onExportProgress(fraction));
+      }
+    }
+    // tails of the last sounds are part of the file
+    streamUtil.writeTails();
+    return !output.failed && !cancelled;
+  }
+
+  private static long getFrames(int duration, String unit) {
+    long factor;
+    switch (unit) {
+      case UNIT.SECONDS:
+        factor = 1;
+        break;
+      case UNIT.MINUTES:
+        factor = 60;
+        break;
+      default:
+        // counted in ticks instead
+        return 0;
+    }
+    return factor * duration * AudioUtil.getSampleRate();
+  }
+
+  private static float getTempo(float tempo) {
+    return Math.max(Constants.TEMPO_MIN, Math.min(tempo, Constants.TEMPO_MAX));
+  }
+
+  @NonNull
+  private ParcelFileDescriptor openFile(Uri uri) throws FileNotFoundException {
+    // truncated, an existing file chosen again is overwritten
+    ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "rwt");
+    if (descriptor == null) {
+      throw new FileNotFoundException("Could not open " + uri);
+    }
+    return descriptor;
+  }
+
+  private void deleteFile(Uri uri) {
+    // an incomplete file is of no use
+    try {
+      DocumentsContract.deleteDocument(context.getContentResolver(), uri);
+    } catch (FileNotFoundException | RuntimeException e) {
+      Log.e(TAG, "deleteFile: could not delete " + uri + ": ", e);
+    }
+  }
+
+  private static class Setup {
+
+    // order of the synthesizer parameters
+    static final String[] SYNTH_TICK_TYPES = new String[]{
+        TICK_TYPE.STRONG, TICK_TYPE.NORMAL, TICK_TYPE.SUB
+    };
+
+    final float tempo;
+    final TickTable tickTable;
+    // the whole program is exported if one is set up
+    @Nullable
+    final Program program;
+    final String[] programSounds;
+    final int[][] voiceTypes;
+    final String sound, synthWaveform;
+    final int[] synthFrequencies = new int[SYNTH_TICK_TYPES.length];
+    final int[] synthDecays = new int[SYNTH_TICK_TYPES.length];
+    final int gain, countIn, length;
+    final String lengthUnit, incrementalUnit;
+    final int incrementalAmount, incrementalInterval;
+    final boolean incrementalIncrease;
+    final int rampTempo, rampDuration;
+    final String rampUnit;
+    final boolean rampExponential;
+    final int mutePlay, muteMute, muteRandom;
+
+    Setup(MetronomeUtil metronomeUtil) {
+      tempo = metronomeUtil.getTempo();
+      // swing, additive meters and other patterns are part of the table
+      tickTable = metronomeUtil.getTickTable();
+      Section[] sections = metronomeUtil.getSections();
+      countIn = metronomeUtil.getCountIn();
+      program = sections.length > 0 ? new Program(sections, countIn) : null;
+      programSounds = new String[sections.length];
+      for (int i = 0; i < sections.length; i++) {
+        programSounds[i] = sections[i].getSound();
+      }
+      String[][] voices = metronomeUtil.getVoices();
+      voiceTypes = new int[voices.length][];
+      for (int i = 0; i < voices.length; i++) {
+        voiceTypes[i] = Tick.getTypeIds(voices[i]);
+      }
+      sound = metronomeUtil.getSound();
+      synthWaveform = metronomeUtil.getSynthWaveform();
+      for (int i = 0; i < SYNTH_TICK_TYPES.length; i++) {
+        synthFrequencies[i] = metronomeUtil.getSynthFrequency(SYNTH_TICK_TYPES[i]);
+        synthDecays[i] = metronomeUtil.getSynthDecay(SYNTH_TICK_TYPES[i]);
+      }
+      gain = metronomeUtil.getGain();
+      // the timer defines how long the practice track is
+      if (metronomeUtil.isTimerActive()) {
+        length = metronomeUtil.getTimerDuration();
+        lengthUnit = metronomeUtil.getTimerUnit();
+      } else {
+        length = DEFAULT_BARS;
+        lengthUnit = UNIT.BARS;
+      }
+      incrementalAmount = metronomeUtil.getIncrementalAmount();
+      incrementalInterval = metronomeUtil.getIncrementalInterval();
+      incrementalUnit = metronomeUtil.getIncrementalUnit();
+      incrementalIncrease = metronomeUtil.getIncrementalIncrease();
+      rampTempo = metronomeUtil.getRampTempo();
+      rampDuration = metronomeUtil.getRampDuration();
+      rampUnit = metronomeUtil.getRampUnit();
+      rampExponential = metronomeUtil.isRampExponential();
+      mutePlay = metronomeUtil.getMutePlay();
+      muteMute = metronomeUtil.getMuteMute();
+      muteRandom = metronomeUtil.getMuteRandom();
+    }
+  }
+
+  private static class FileOutput implements StreamUtil.Output {
+
+    private final WavWriter writer;
+    private boolean failed;
+
+    FileOutput(WavWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public int write(float[] data, int offset, int size) {
+      if (failed) {
+        return 0;
+      }
+      try {
+        writer.write(data, offset, size);
+        return size;
+      } catch (IOException e) {
+        // the export stops, an incomplete file is deleted
+        Log.e(TAG, "write: failed to write audio file: ", e);
+        failed = true;
+        return 0;
+      }
+    }
+  }
+
+  public interface ExportListener {
+    void onExportProgress(float fraction);
+    void onExportFinished(boolean success);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.view.Choreographer;
+import android.view.Choreographer.FrameCallback;
+import androidx.annotation.NonNull;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.TickQueue;
+
+public class FrameTickUtil implements FrameCallback {
+
+  private static final int QUEUE_CAPACITY = 128;
+  private static final long FRAME_INTERVAL_DEFAULT = 16_666_667;
+  // recent frames of which the shortest interval is the refresh rate
+  private static final int FRAME_INTERVAL_WINDOW = 16;
+
+  private final TickQueue queue;
+  private final Tick tick = new Tick();
+  private final FrameTickListener listener;
+  private final long[] frameIntervals = new long[FRAME_INTERVAL_WINDOW];
+  private long lastFrameTimeNanos, frameIntervalNanos = FRAME_INTERVAL_DEFAULT;
+  private int frameCount;
+  private boolean running;
+
+  public FrameTickUtil(long lead, @NonNull FrameTickListener listener) {
+    this.listener = listener;
+    queue = new TickQueue(QUEUE_CAPACITY, lead);
+  }
+
+  public TickQueue getQueue() {
+    return queue;
+  }
+
+  public void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    lastFrameTimeNanos = 0;
+    frameCount = 0;
+    // ticks published while paused are outdated
+    queue.clear();
+    Choreographer.getInstance().postFrameCallback(this);
+  }
+
+  public void stop() {
+    running = false;
+    Choreographer.getInstance().removeFrameCallback(this);
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    if (!running) {
+      return;
+    }
+    if (lastFrameTimeNanos > 0) {
+      // shortest recent interval is the refresh rate, longer ones are skipped frames
+      frameIntervals[frameCount % FRAME_INTERVAL_WINDOW] = Math.max(
+          frameTimeNanos - lastFrameTimeNanos, 1_000_000
+      );
+      frameCount++;
+      // only recent frames count, the display may switch to a lower refresh rate
+      long interval = Long.MAX_VALUE;
+      for (int i = 0; i < Math.min(frameCount, FRAME_INTERVAL_WINDOW); i++) {
+        interval = Math.min(interval, frameIntervals[i]);
+      }
+      frameIntervalNanos = interval;
+    }
+    lastFrameTimeNanos = frameTimeNanos;
+    // this frame is shown one vsync later, frame time and uptime share the monotonic clock
+    long presentationTime = (frameTimeNanos + frameIntervalNanos) / 1_000_000;
+    while (queue.poll(presentationTime, tick)) {
+      listener.onFrameTick(tick, presentationTime);
+    }
+    Choreographer.getInstance().postFrameCallback(this);
+  }
+
+  public interface FrameTickListener {
+    void onFrameTick(Tick tick, long presentationTime);
+  }
+}
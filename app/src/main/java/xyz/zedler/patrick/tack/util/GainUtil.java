@@ -0,0 +1,62 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+public class GainUtil {
+
+  // samples above this level are compressed smoothly towards full scale
+  private static final float LIMITER_THRESHOLD = 0.8f;
+
+  public static float getLinearGain(int gainDb) {
+    return (float) Math.pow(10, gainDb / 20.0);
+  }
+
+  public static float[] applyGain(float[] source, int gainDb) {
+    if (source == null || gainDb == 0) {
+      return source;
+    }
+    float gain = getLinearGain(gainDb);
+    float[] data = new float[source.length];
+    for (int i = 0; i < source.length; i++) {
+      data[i] = limit(source[i] * gain);
+    }
+    return data;
+  }
+
+  public static float[] scale(float[] source, float factor) {
+    float[] data = new float[source.length];
+    for (int i = 0; i < source.length; i++) {
+      data[i] = source[i] * factor;
+    }
+    return data;
+  }
+
+  public static float limit(float sample) {
+    float level = Math.abs(sample);
+    if (level <= LIMITER_THRESHOLD) {
+      return sample;
+    }
+    // tanh knee is continuous at the threshold and never exceeds full scale
+    float range = 1 - LIMITER_THRESHOLD;
+    float excess = (level - LIMITER_THRESHOLD) / range;
+    float limited = LIMITER_THRESHOLD + range * (float) Math.tanh(excess);
+    return Math.copySign(limited, sample);
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaCodec.BufferInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ImportUtil {
+
+  private static final String TAG = ImportUtil.class.getSimpleName();
+
+  private static final String SOUND_DIRECTORY = "sounds";
+  // the file name contains the sample rate, e.g. custom_48000.f32
+  private static final String CUSTOM_SOUND_PREFIX = "custom_";
+  private static final String SOUND_EXTENSION = ".f32";
+  private static final long CODEC_TIMEOUT_US = 10000;
+  // a click does not need more, longer recordings are cut with a short fade-out
+  private static final int MAX_DURATION_MILLIS = 2000;
+  private static final int FADE_OUT_MILLIS = 10;
+
+  private final Context context;
+  // shared, so that imports from different screens are never written at the same time
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  public ImportUtil(@NonNull Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  public void importSound(@NonNull Uri uri, @NonNull ImportListener listener) {
+    executor.execute(() -> {
+      boolean success;
+      try {
+        float[] sound = decode(uri);
+        int sampleRate = AudioUtil.getSampleRate();
+        File file = new File(
+            getSoundDirectory(context), CUSTOM_SOUND_PREFIX + sampleRate + SOUND_EXTENSION
+        );
+        writeSound(file, sound);
+        deleteOtherCustomSounds(file);
+        // a previous import may still be cached under the same file
+        SampleUtil.invalidate(SampleUtil.getFileSource(file, sampleRate));
+        success = true;
+      } catch (IOException | RuntimeException e) {
+        Log.e(TAG, "importSound: failed to import " + uri + ": ", e);
+        success = false;
+      }
+      boolean imported = success;
+      mainHandler.post(() -> listener.onImportFinished(imported));
+    });
+  }
+
+  @Nullable
+  public static String getCustomSoundSource(Context context) {
+    File file = getCustomSoundFile(context);
+    return file != null ? SampleUtil.getFileSource(file, getSampleRate(file)) : null;
+  }
+
+  public static boolean hasCustomSound(Context context) {
+    return getCustomSoundFile(context) != null;
+  }
+
+  @Nullable
+  private static File getCustomSoundFile(Context context) {
+    File[] files = getSoundDirectory(context).listFiles(ImportUtil::isCustomSound);
+    return files != null && files.length > 0 ? files[0] : null;
+  }
+
+  private static void deleteOtherCustomSounds(File file) {
+    File[] files = file.getParentFile() != null
+        ? file.getParentFile().listFiles(ImportUtil::isCustomSound)
+        : null;
+    if (files == null) {
+      return;
+    }
+    for (File other : files) {
+      if (!other.equals(file) && !other.delete()) {
+        Log.e(TAG, "deleteOtherCustomSounds: could not delete " + other);
+      }
+    }
+  }
+
+  private static boolean isCustomSound(File file) {
+    String name = file.getName();
+    return name.startsWith(CUSTOM_SOUND_PREFIX) && name.endsWith(SOUND_EXTENSION);
+  }
+
+  private static int getSampleRate(File file) {
+    String name = file.getName();
+    try {
+      return Integer.parseInt(
+          name.substring(CUSTOM_SOUND_PREFIX.length(), name.length() - SOUND_EXTENSION.length())
+      );
+    } catch (NumberFormatException e) {
+      Log.e(TAG, "getSampleRate: invalid file name " + name + ": ", e);
+      return AudioUtil.DEFAULT_SAMPLE_RATE;
+    }
+  }
+
+  private static File getSoundDirectory(Context context) {
+    return new File(context.getFilesDir(), SOUND_DIRECTORY);
+  }
+
+  private float[] decode(Uri uri) throws IOException {
+    MediaExtractor extractor = new MediaExtractor();
+    MediaCodec codec = null;
+    try {
+      extractor.setDataSource(context, uri, null);
+      MediaFormat format = null;
+      for (int i = 0; i < extractor.getTrackCount(); i++) {
+        MediaFormat trackFormat = extractor.getTrackFormat(i);
+        String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+        if (mime != null && mime.startsWith("audio/")) {
+          extractor.selectTrack(i);
+          format = trackFormat;
+          break;
+        }
+      }
+      if (format == null) {
+        throw new IOException("No audio track found");
+      }
+      codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+      codec.configure(format, null, null, 0);
+      codec.start();
+      return decodeTrack(extractor, codec, format);
+    } finally {
+      if (codec != null) {
+        codec.release();
+      }
+      extractor.release();
+    }
+  }
+
+  private static float[] decodeTrack(
+      MediaExtractor extractor, MediaCodec codec, MediaFormat format
+  ) {
+    int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+    int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+    int encoding = AudioFormat.ENCODING_PCM_16BIT;
+    int maxFrames = (int) ((long) sampleRate * MAX_DURATION_MILLIS / 1000);
+    float[] data = new float[Math.min(maxFrames, sampleRate / 4)];
+    int frames = 0;
+    boolean inputDone = false, outputDone = false;
+    BufferInfo info = new BufferInfo();
+    while (!outputDone && frames < maxFrames) {
+      if (!inputDone) {
+        int inputIndex = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+        if (inputIndex >= 0) {
+          ByteBuffer input = codec.getInputBuffer(inputIndex);
+          int size = input != null ? extractor.readSampleData(input, 0) : -1;
+          if (size < 0) {
+            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            inputDone = true;
+          } else {
+            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+            extractor.advance();
+          }
+        }
+      }
+      int outputIndex = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+      if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        MediaFormat outputFormat = codec.getOutputFormat();
+        sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        // decoders output 16-bit PCM before the encoding was reported
+        if (VERSION.SDK_INT >= VERSION_CODES.N
+            && outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+          encoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
+        }
+        maxFrames = (int) ((long) sampleRate * MAX_DURATION_MILLIS / 1000);
+      } else if (outputIndex >= 0) {
+        ByteBuffer output = codec.getOutputBuffer(outputIndex);
+        if (output != null && info.size > 0) {
+          output.position(info.offset);
+          output.limit(info.offset + info.size);
+          output.order(ByteOrder.nativeOrder());
+          int bytesPerSample = encoding == AudioFormat.ENCODING_PCM_FLOAT ? 4 : 2;
+          int count = Math.min(info.size / (bytesPerSample * channels), maxFrames - frames);
+          if (frames + count > data.length) {
+            int capacity = Math.max(frames + count, data.length * 2);
+            data = Arrays.copyOf(data, Math.min(maxFrames, capacity));
+          }
+          // channels are mixed down to mono
+          for (int i = 0; i < count; i++, frames++) {
+            float sum = 0;
+            for (int channel = 0; channel < channels; channel++) {
+              if (bytesPerSample == 4) {
+                sum += output.getFloat();
+              } else {
+                sum += output.getShort() / 32768f;
+              }
+            }
+            data[frames] = sum / channels;
+          }
+        }
+        codec.releaseOutputBuffer(outputIndex, false);
+        outputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+      }
+    }
+    if (frames == 0) {
+      throw new IllegalStateException("No audio decoded");
+    }
+    if (frames == maxFrames) {
+      int fadeFrames = Math.min(frames, sampleRate * FADE_OUT_MILLIS / 1000);
+      for (int i = 0; i < fadeFrames; i++) {
+        data[frames - 1 - i] *= (float) i / fadeFrames;
+      }
+    }
+    // stored at the output rate, so loading needs no conversion
+    float[] sound = Arrays.copyOf(data, frames);
+    return ResampleUtil.resample(sound, (double) sampleRate / AudioUtil.getSampleRate());
+  }
+
+  private static void writeSound(File file, float[] sound) throws IOException {
+    File directory = file.getParentFile();
+    if (directory != null && !directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+    // written to a temporary file first, an interrupted import keeps the previous sound
+    File temp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream stream = new FileOutputStream(temp)) {
+      FileChannel channel = stream.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(sound.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asFloatBuffer().put(sound);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    if (!temp.renameTo(file)) {
+      throw new IOException("Could not move " + temp + " to " + file);
+    }
+  }
+
+  public interface ImportListener {
+    void onImportFinished(boolean success);
+  }
+}
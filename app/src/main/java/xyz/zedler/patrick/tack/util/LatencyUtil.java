@@ -0,0 +1,134 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import xyz.zedler.patrick.tack.Constants.PREF;
+
+public class LatencyUtil {
+
+  private static final String TAG = LatencyUtil.class.getSimpleName();
+
+  private static final String ROUTE_DEFAULT = "default";
+  private static final long LATENCY_BLUETOOTH = 150;
+  private static final int MEASUREMENTS_MIN = 10;
+
+  private final SharedPreferences sharedPrefs;
+  private final AudioManager audioManager;
+  private String route;
+  private long latency;
+  private double measuredSum;
+  private int measuredCount;
+
+  public LatencyUtil(Context context) {
+    sharedPrefs = new PrefsUtil(context).getSharedPrefs();
+    audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    updateRoute(null);
+  }
+
+  public boolean updateRoute(@Nullable AudioDeviceInfo routedDevice) {
+    AudioDeviceInfo device = routedDevice != null ? routedDevice : getLikelyOutputDevice();
+    String route = ROUTE_DEFAULT;
+    if (device != null && VERSION.SDK_INT >= VERSION_CODES.M) {
+      route = device.getType() + "_" + device.getProductName();
+    }
+    if (route.equals(this.route)) {
+      return false;
+    }
+    save();
+    this.route = route;
+    latency = sharedPrefs.getLong(PREF.OUTPUT_LATENCY + route, getEstimatedLatency(device));
+    measuredSum = 0;
+    measuredCount = 0;
+    Log.i(TAG, "updateRoute: output latency for route " + route + " is " + latency + " ms");
+    return true;
+  }
+
+  public long getLatency() {
+    return latency;
+  }
+
+  public void addMeasurement(long latency) {
+    measuredSum += latency;
+    measuredCount++;
+    if (measuredCount >= MEASUREMENTS_MIN) {
+      this.latency = Math.round(measuredSum / measuredCount);
+    }
+  }
+
+  public void save() {
+    if (route != null && measuredCount >= MEASUREMENTS_MIN) {
+      sharedPrefs.edit().putLong(PREF.OUTPUT_LATENCY + route, latency).apply();
+    }
+  }
+
+  private long getEstimatedLatency(@Nullable AudioDeviceInfo device) {
+    if (device != null && VERSION.SDK_INT >= VERSION_CODES.M
+        && device.getType() == AudioDeviceInfo.TYPE_BLUETOOTH_A2DP) {
+      return LATENCY_BLUETOOTH;
+    }
+    // mixer and HAL usually hold two bursts of the native output
+    return AudioUtil.getFramesPerBurst() * 2 * 1000L / AudioUtil.getSampleRate();
+  }
+
+  @Nullable
+  private AudioDeviceInfo getLikelyOutputDevice() {
+    if (VERSION.SDK_INT < VERSION_CODES.M) {
+      return null;
+    }
+    AudioDeviceInfo likelyDevice = null;
+    int maxPriority = 0;
+    for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS)) {
+      int priority = getRoutePriority(device.getType());
+      if (priority > maxPriority) {
+        maxPriority = priority;
+        likelyDevice = device;
+      }
+    }
+    return likelyDevice;
+  }
+
+  @SuppressLint("InlinedApi")
+  private static int getRoutePriority(int type) {
+    // media is routed to external devices before the speaker, types of newer versions are
+    // only compared and never reported by older ones
+    switch (type) {
+      case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+      case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+      case AudioDeviceInfo.TYPE_USB_HEADSET:
+      case AudioDeviceInfo.TYPE_USB_DEVICE:
+        return 3;
+      case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+        return 2;
+      case AudioDeviceInfo.TYPE_BUILTIN_SPEAKER:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+}
@@ -19,7 +19,6 @@
 
 package xyz.zedler.patrick.tack.util;
 
-import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
 import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.RotateDrawable;
@@ -32,7 +31,7 @@ public class LogoUtil {
   private final static String TAG = LogoUtil.class.getSimpleName();
 
   private final RotateDrawable pointer;
-  private AnimatorSet animatorSet;
+  private ObjectAnimator animator;
   private boolean isLeft = true;
 
   public LogoUtil(ImageView imageView) {
@@ -41,14 +40,17 @@ public class LogoUtil {
     pointer.setLevel(0);
   }
 
-  public void nextBeat(long interval) {
-    if (animatorSet != null) {
-      animatorSet.pause();
-      animatorSet.cancel();
+  public void nextBeat(long interval, long playTime) {
+    if (animator != null) {
+      animator.pause();
+      animator.cancel();
+    }
+    animator = getAnimator(interval, isLeft ? 10000 : 0);
+    animator.start();
+    if (playTime > 0) {
+      // catch up if the beat is shown later than it was heard
+      animator.setCurrentPlayTime(Math.min(playTime, interval));
     }
-    animatorSet = new AnimatorSet();
-    animatorSet.play(getAnimator(interval, isLeft ? 10000 : 0));
-    animatorSet.start();
     isLeft = !isLeft;
   }
 
@@ -19,76 +19,132 @@
 
 package xyz.zedler.patrick.tack.util;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
-import android.view.animation.LinearInterpolator;
 import androidx.annotation.NonNull;
-import androidx.preference.PreferenceManager;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
 import java.util.Set;
+import xyz.zedler.patrick.tack.BuildConfig;
 import xyz.zedler.patrick.tack.Constants;
 import xyz.zedler.patrick.tack.Constants.DEF;
 import xyz.zedler.patrick.tack.Constants.PREF;
 import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE_ID;
 import xyz.zedler.patrick.tack.Constants.UNIT;
 import xyz.zedler.patrick.tack.R;
+import xyz.zedler.patrick.tack.model.Section;
 
 public class MetronomeUtil {
 
   private static final String TAG = MetronomeUtil.class.getSimpleName();
 
+  private static final int MSG_TICK = 0;
+  private static final int MSG_RAMP_TEMPO = 1;
+  // ticks are reused, large enough for all ticks scheduled ahead at max tempo and subdivisions
+  private static final int TICK_POOL_SIZE = 128;
+  // consecutive allocating ticks after which debug builds fail
+  private static final int ALLOC_CHECK_TICKS = 16;
+
   private final Context context;
   private final SharedPreferences sharedPrefs;
   private final AudioUtil audioUtil;
   private final HapticUtil hapticUtil;
   private final ShortcutUtil shortcutUtil;
   private final Set<MetronomeListener> listeners = new HashSet<>();
+  private final Set<TickQueue> tickQueues = new HashSet<>();
+  private final Tick[] tickPool = new Tick[TICK_POOL_SIZE];
+  private final TickQueue hapticQueue = new TickQueue(TICK_POOL_SIZE, 0);
+  private final Tick hapticTick = new Tick();
+  private final TimerPositions timerPositions = new TimerPositions();
   private final boolean fromService;
   private HandlerThread audioThread, callbackThread;
   private Handler tickHandler, latencyHandler;
   private Handler countInHandler, incrementalHandler, elapsedHandler, timerHandler;
-  private String incrementalUnit, timerUnit;
+  private String incrementalUnit, timerUnit, rampUnit;
   private String[] beats, subdivisions;
-  private ValueAnimator timerAnimator;
-  private int tempo, countIn, incrementalAmount, incrementalInterval, timerDuration;
+  // always as long as the beats and subdivisions, replaced instead of modified in place
+  private int[] beatVelocities, subdivisionVelocities;
+  // additional polyrhythm voices, each spreads its pulses evenly over the bar
+  private String[][] voices;
+  private int[][] voiceTypes;
+  // pulses of each beat for additive meters, empty for regular meters
+  private int[] groups;
+  // compiled from the pattern whenever it changes, replaced instead of modified in place
+  private volatile TickTable tickTable;
+  private Section[] sections;
+  // compiled when playback starts, only read by the audio thread while playing
+  private Program program;
+  private int programSection, programBars;
+  // created when playback starts, advanced by the audio thread with every period
+  private Ramp ramp;
+  private int rampShownTempo;
+  // replaced when playback starts, only used by the audio thread
+  private MuteTrainer muteTrainer;
+  private volatile TickQueue[] tickQueueArray = new TickQueue[0];
+  private float tempo;
+  private int countIn, incrementalAmount, incrementalInterval, timerDuration;
+  private int rampTempo, rampDuration, mutePlay, muteMute, muteRandom;
+  private int allocatingTicks, startCount, tickInBar;
+  // bar timers are counted by the audio thread, from the given bar on at the base bar
+  private int timerStartBar;
+  private long barCount, timerBaseBar;
   private long tickIndex, latency, elapsedStartTime, elapsedTime, elapsedPrevious, timerStartTime;
-  private float timerProgress;
+  private volatile float timerProgress;
   private boolean playing, tempPlaying, useSubdivisions, beatModeVibrate, isCountingIn;
-  private boolean showElapsed, resetElapsed, resetTimer;
-  private boolean alwaysVibrate, incrementalIncrease, flashScreen, keepAwake;
+  private boolean showElapsed, resetElapsed, resetTimer, resetElapsedAndTimer;
+  private boolean alwaysVibrate, incrementalIncrease, rampExponential, muteHide;
+  private boolean flashScreen, keepAwake;
   private boolean neverStartedWithGain = true;
 
   public MetronomeUtil(@NonNull Context context, boolean fromService) {
     this.context = context;
     this.fromService = fromService;
 
-    sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+    sharedPrefs = new PrefsUtil(context).checkForMigrations().getSharedPrefs();
 
     audioUtil = new AudioUtil(context, this::stop);
     hapticUtil = new HapticUtil(context);
     shortcutUtil = new ShortcutUtil(context);
+    for (int i = 0; i < tickPool.length; i++) {
+      tickPool[i] = new Tick();
+    }
 
     resetHandlersIfRequired();
     setToPreferences();
   }
 
   public void setToPreferences() {
-    tempo = sharedPrefs.getInt(PREF.TEMPO, DEF.TEMPO);
+    tempo = sharedPrefs.getFloat(PREF.TEMPO, DEF.TEMPO);
     beats = sharedPrefs.getString(PREF.BEATS, DEF.BEATS).split(",");
     subdivisions = sharedPrefs.getString(PREF.SUBDIVISIONS, DEF.SUBDIVISIONS).split(",");
+    beatVelocities = getVelocities(
+        sharedPrefs.getString(PREF.BEAT_VELOCITIES, DEF.VELOCITIES), beats.length
+    );
+    subdivisionVelocities = getVelocities(
+        sharedPrefs.getString(PREF.SUBDIVISION_VELOCITIES, DEF.VELOCITIES), subdivisions.length
+    );
+    voices = getVoices(sharedPrefs.getString(PREF.VOICES, DEF.VOICES));
+    groups = getGroups(sharedPrefs.getString(PREF.GROUPS, DEF.GROUPS), beats.length);
+    sections = getSections(sharedPrefs.getString(PREF.PROGRAM, DEF.PROGRAM));
+    programBars = sharedPrefs.getInt(PREF.PROGRAM_BARS, DEF.PROGRAM_BARS);
     useSubdivisions = sharedPrefs.getBoolean(PREF.USE_SUBS, DEF.USE_SUBS);
+    updateTickTypes();
     countIn = sharedPrefs.getInt(PREF.COUNT_IN, DEF.COUNT_IN);
     latency = sharedPrefs.getLong(PREF.LATENCY, DEF.LATENCY);
     incrementalAmount = sharedPrefs.getInt(PREF.INCREMENTAL_AMOUNT, DEF.INCREMENTAL_AMOUNT);
@@ -97,6 +153,14 @@ public class MetronomeUtil {
     );
     incrementalInterval = sharedPrefs.getInt(PREF.INCREMENTAL_INTERVAL, DEF.INCREMENTAL_INTERVAL);
     incrementalUnit = sharedPrefs.getString(PREF.INCREMENTAL_UNIT, DEF.INCREMENTAL_UNIT);
+    rampTempo = sharedPrefs.getInt(PREF.RAMP_TEMPO, DEF.RAMP_TEMPO);
+    rampDuration = sharedPrefs.getInt(PREF.RAMP_DURATION, DEF.RAMP_DURATION);
+    rampUnit = sharedPrefs.getString(PREF.RAMP_UNIT, DEF.RAMP_UNIT);
+    rampExponential = sharedPrefs.getBoolean(PREF.RAMP_EXPONENTIAL, DEF.RAMP_EXPONENTIAL);
+    mutePlay = sharedPrefs.getInt(PREF.MUTE_PLAY, DEF.MUTE_PLAY);
+    muteMute = sharedPrefs.getInt(PREF.MUTE_MUTE, DEF.MUTE_MUTE);
+    muteRandom = sharedPrefs.getInt(PREF.MUTE_RANDOM, DEF.MUTE_RANDOM);
+    muteHide = sharedPrefs.getBoolean(PREF.MUTE_HIDE, DEF.MUTE_HIDE);
     timerDuration = sharedPrefs.getInt(PREF.TIMER_DURATION, DEF.TIMER_DURATION);
     timerUnit = sharedPrefs.getString(PREF.TIMER_UNIT, DEF.TIMER_UNIT);
     alwaysVibrate = sharedPrefs.getBoolean(PREF.ALWAYS_VIBRATE, DEF.ALWAYS_VIBRATE);
@@ -106,7 +170,13 @@ public class MetronomeUtil {
     flashScreen = sharedPrefs.getBoolean(PREF.FLASH_SCREEN, DEF.FLASH_SCREEN);
     keepAwake = sharedPrefs.getBoolean(PREF.KEEP_AWAKE, DEF.KEEP_AWAKE);
 
+    audioUtil.setSynthWaveform(getSynthWaveform());
+    for (String tickType : new String[]{TICK_TYPE.STRONG, TICK_TYPE.NORMAL, TICK_TYPE.SUB}) {
+      audioUtil.setSynthFrequency(tickType, getSynthFrequency(tickType));
+      audioUtil.setSynthDecay(tickType, getSynthDecay(tickType));
+    }
     setSound(sharedPrefs.getString(PREF.SOUND, DEF.SOUND));
+    audioUtil.setProgramSounds(getSectionSounds());
     setIgnoreFocus(sharedPrefs.getBoolean(PREF.IGNORE_FOCUS, DEF.IGNORE_FOCUS));
     setGain(sharedPrefs.getInt(PREF.GAIN, DEF.GAIN));
     setBeatModeVibrate(sharedPrefs.getBoolean(PREF.BEAT_MODE_VIBRATE, DEF.BEAT_MODE_VIBRATE));
@@ -126,7 +196,7 @@ public class MetronomeUtil {
       callbackThread = new HandlerThread("metronome_callback");
       callbackThread.start();
       removeHandlerCallbacks();
-      latencyHandler = new Handler(callbackThread.getLooper());
+      latencyHandler = new Handler(callbackThread.getLooper(), this::handleCallbackMessage);
       countInHandler = new Handler(callbackThread.getLooper());
       incrementalHandler = new Handler(callbackThread.getLooper());
       elapsedHandler = new Handler(callbackThread.getLooper());
@@ -160,13 +230,26 @@ public class MetronomeUtil {
   }
 
   public void setUpLatencyCalibration() {
+    // a running program, ramp or gap trainer would keep playing, the click starts fresh
+    stop();
     tempo = 80;
     beats = DEF.BEATS.split(",");
     subdivisions = DEF.SUBDIVISIONS.split(",");
+    // not persisted, the velocities are restored with the preferences afterwards
+    beatVelocities = getVelocities(DEF.VELOCITIES, beats.length);
+    subdivisionVelocities = getVelocities(DEF.VELOCITIES, subdivisions.length);
+    voices = new String[0][];
+    groups = new int[0];
+    updateTickTypes();
     alwaysVibrate = true;
     countIn = 0;
     incrementalAmount = 0;
+    rampDuration = 0;
+    muteMute = 0;
+    muteRandom = 0;
     timerDuration = 0;
+    // a plain click instead of the program, the sections are restored with the preferences
+    sections = new Section[0];
     setGain(0);
     setBeatModeVibrate(false);
     start(false);
@@ -174,8 +257,12 @@ public class MetronomeUtil {
 
   public void destroy() {
     listeners.clear();
+    tickQueues.clear();
+    tickQueueArray = new TickQueue[0];
     if (fromService) {
       removeHandlerCallbacks();
+      audioUtil.setKeepWarm(false);
+      audioUtil.release();
       audioThread.quitSafely();
       callbackThread.quit();
     }
@@ -197,22 +284,30 @@ public class MetronomeUtil {
     return Collections.unmodifiableSet(listeners);
   }
 
+  public void addTickQueue(TickQueue queue) {
+    tickQueues.add(queue);
+    tickQueueArray = tickQueues.toArray(new TickQueue[0]);
+  }
+
+  public void removeTickQueue(TickQueue queue) {
+    tickQueues.remove(queue);
+    tickQueueArray = tickQueues.toArray(new TickQueue[0]);
+  }
+
   public void start() {
     start(true);
   }
 
   public void start(boolean resetElapsedAndTimerIfNecessary) {
+    long startRequestTime = SystemClock.uptimeMillis();
     if (!NotificationUtil.hasPermission(context)) {
       for (MetronomeListener listener : listeners) {
         listener.onPermissionMissing();
       }
       return;
     }
-    if (resetElapsedAndTimerIfNecessary) {
-      // notify system for shortcut usage prediction
-      shortcutUtil.reportUsage(getTempo());
-    }
     if (isPlaying()) {
+      reportShortcutUsage(resetElapsedAndTimerIfNecessary);
       return;
     }
     if (!fromService) {
@@ -224,37 +319,172 @@ public class MetronomeUtil {
       resetHandlersIfRequired();
     }
 
+    if (isTimerActive() && timerUnit.equals(UNIT.BARS)) {
+      boolean reset = resetTimer && resetElapsedAndTimerIfNecessary || equalsTimerProgress(1);
+      timerStartBar = reset ? 0 : (int) (timerProgress * timerDuration);
+      timerProgress = (float) timerStartBar / timerDuration;
+    }
+    // the timer starts with the first bar after the count-in
+    timerBaseBar = -1;
+    timerPositions.clear();
+    barCount = 0;
+    int startCount = ++this.startCount;
+
     playing = true;
-    audioUtil.play();
+    isCountingIn = isCountInActive();
+    resetElapsedAndTimer = resetElapsedAndTimerIfNecessary;
     tickIndex = 0;
+    tickInBar = 0;
+    // sections are switched by the audio thread on the first tick of their first bar
+    program = isProgramActive() ? new Program(sections, countIn) : null;
+    programSection = 0;
+    // programs define the tempo of each section themselves
+    ramp = isRampActive() && program == null
+        ? new Ramp(tempo, rampTempo, rampDuration, rampUnit, rampExponential)
+        : null;
+    rampShownTempo = Math.round(tempo);
+    muteTrainer = isMuteActive() ? new MuteTrainer(mutePlay, muteMute, muteRandom) : null;
+    // producer and consumer are both idle before the tick loop starts
+    hapticQueue.clear();
+    if (BuildConfig.DEBUG) {
+      allocatingTicks = 0;
+      startAllocCounting();
+    }
+    Program program = this.program;
+    Ramp ramp = this.ramp;
+    // starting the track on the audio thread keeps it in order with the tick loop
+    tickHandler.post(() -> {
+      audioUtil.setSoundSet(program != null ? 1 : 0);
+      audioUtil.play(startRequestTime);
+    });
     tickHandler.post(new Runnable() {
+      // state of the previous tick for the allocation check of debug builds
+      private TickTable checkedTable;
+      private int[][] checkedVoiceTypes;
+      private float checkedTempo;
+
       @Override
       public void run() {
         if (isPlaying()) {
-          tickHandler.postDelayed(this, getInterval() / getSubdivisionsCount());
-          Tick tick = new Tick(
-              tickIndex, getCurrentBeat(), getCurrentSubdivision(), getCurrentTickType()
+          if (!audioUtil.isReadyForTick()) {
+            // render-ahead budget of the low-latency mode is full
+            tickHandler.postDelayed(this, audioUtil.getRenderWaitMillis());
+            return;
+          }
+          if (program != null && tickIndex == program.getEndTick()) {
+            stopWhenWrittenHeard(startCount);
+            return;
+          }
+          float tempo;
+          TickTable table;
+          int[][] voiceTypes;
+          boolean isSectionStart = false;
+          if (program != null) {
+            if (tickIndex == program.startTicks[programSection + 1]) {
+              // exactly at the end of the previous section's last period
+              programSection++;
+              audioUtil.setSoundSet(programSection + 1);
+            }
+            int section = programSection;
+            tempo = program.tempos[section];
+            table = program.tables[section];
+            voiceTypes = program.voiceTypes;
+            isSectionStart = tickIndex == program.startTicks[section];
+          } else {
+            tempo = MetronomeUtil.this.tempo;
+            table = tickTable;
+            voiceTypes = MetronomeUtil.this.voiceTypes;
+          }
+          if (tickInBar >= table.size) {
+            // the bar was shortened while playing, the next one starts right away
+            tickInBar = 0;
+          }
+          int allocCount = BuildConfig.DEBUG ? getThreadAllocCount() : 0;
+
+          // the position in the bar is walked through the table, nothing is derived from the index
+          Tick tick = tickPool[(int) (tickIndex % TICK_POOL_SIZE)];
+          tick.set(
+              tickIndex,
+              table.beats[tickInBar],
+              table.subdivisions[tickInBar],
+              table.types[tickInBar],
+              table.velocities[tickInBar],
+              audioUtil.getWrittenFrames()
           );
-          performTick(tick);
-          audioUtil.tick(tick, tempo, getSubdivisionsCount());
+          boolean isBarStart = tickInBar == 0;
+          if (isBarStart) {
+            barCount++;
+          }
+          long barIndex = barCount - 1;
+          int timerBar = -1;
+          boolean isTimerBars = isTimerActive() && timerUnit.equals(UNIT.BARS);
+          if (isTimerBars && barIndex >= getCountIn()) {
+            if (timerBaseBar < 0 && isBarStart) {
+              timerBaseBar = barIndex;
+            }
+            if (timerBaseBar >= 0) {
+              timerBar = (int) (timerStartBar + barIndex - timerBaseBar);
+            }
+            if (timerBar >= timerDuration) {
+              // directly after the last tick of the final bar, nothing of the next one is written
+              long endTime = audioUtil.getFrameTime(audioUtil.getWrittenFrames());
+              // complete when playback is stopped below
+              timerPositions.offer(endTime, timerDuration - 1, table.beatCount, timerDuration);
+              stopWhenWrittenHeard(startCount);
+              return;
+            }
+          }
+          // frames written to the track are the master clock, writes or the budget pace this loop
+          tickHandler.post(this);
+
+          boolean isRamping = ramp != null && barIndex >= getCountIn();
+          if (isRamping) {
+            // evaluated for each period, the tempo of the next one depends on this one's length
+            tempo = ramp.getTempo();
+            if (!ramp.isFinished()) {
+              ramp.advance(tempo, table, tickInBar);
+            }
+          }
+          // ramps, programs and additive meters change the beat duration of the visuals
+          tick.beatInterval = (long) (
+              1000 * 60 / tempo * table.beatLengths[tickInBar] / table.unitsPerBeat
+          );
+          performTick(tick, barIndex, isSectionStart ? programSection : -1);
+          if (timerBar >= 0) {
+            float position = timerBar + table.starts[tickInBar] / (float) table.barUnits;
+            timerPositions.offer(tick.time, timerBar, tick.beat, position);
+          }
+          audioUtil.tick(tick, tempo, table, tickInBar, voiceTypes);
+          if (isRamping && Math.round(tempo) != rampShownTempo) {
+            // the tempo is only observed by the UI, in whole steps when the period is heard
+            rampShownTempo = Math.round(tempo);
+            // pooled message instead of a lambda, ramps run through the allocation check too
+            latencyHandler.sendMessageAtTime(
+                latencyHandler.obtainMessage(MSG_RAMP_TEMPO, Float.floatToIntBits(tempo), 0),
+                tick.time
+            );
+          }
+
+          if (BuildConfig.DEBUG) {
+            // skip the first bar and bar starts, where bar-wise changes may allocate
+            boolean isSteady = tick.index >= table.size && !isBarStart;
+            // changed patterns and tempos render a new bar, ramps are written period by period
+            boolean isUnchanged = table == checkedTable
+                && voiceTypes == checkedVoiceTypes
+                && (isRamping || tempo == checkedTempo);
+            checkedTable = table;
+            checkedVoiceTypes = voiceTypes;
+            checkedTempo = tempo;
+            if (isSteady && isUnchanged) {
+              checkTickAllocations(getThreadAllocCount() - allocCount);
+            }
+          }
           tickIndex++;
+          tickInBar = table.getNext(tickInBar);
         }
       }
     });
 
-    isCountingIn = isCountInActive();
-    countInHandler.postDelayed(() -> {
-      isCountingIn = false;
-      updateIncrementalHandler();
-      elapsedStartTime = System.currentTimeMillis();
-      updateElapsedHandler(resetElapsed && resetElapsedAndTimerIfNecessary);
-      timerStartTime = System.currentTimeMillis();
-      updateTimerHandler(
-          resetTimer && resetElapsedAndTimerIfNecessary ? 0 : timerProgress,
-          true
-      );
-    }, getCountInInterval()); // 0 if count-in is disabled
-
     if (getGain() > 0) {
       neverStartedWithGain = false;
     }
@@ -262,9 +492,54 @@ public class MetronomeUtil {
     for (MetronomeListener listener : listeners) {
       listener.onMetronomeStart();
     }
+    // not needed for the first click, so it is reported after the audio thread started
+    reportShortcutUsage(resetElapsedAndTimerIfNecessary);
     Log.i(TAG, "start: started metronome handler");
   }
 
+  private void reportShortcutUsage(boolean resetElapsedAndTimerIfNecessary) {
+    if (resetElapsedAndTimerIfNecessary && isTempoWhole(getTempo())) {
+      // notify system for shortcut usage prediction, shortcuts only exist for whole tempos
+      shortcutUtil.reportUsage((int) getTempo());
+    }
+  }
+
+  private void stopWhenWrittenHeard(int startCount) {
+    tickHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!isPlaying() || MetronomeUtil.this.startCount != startCount) {
+          return;
+        }
+        if (!audioUtil.writeTails()) {
+          // non-blocking writes continue when the track has room again
+          tickHandler.postDelayed(this, audioUtil.getRenderWaitMillis());
+          return;
+        }
+        // all output is written, playback stops when the last of it was heard
+        long endTime = audioUtil.getFrameTime(audioUtil.getWrittenFrames());
+        new Handler(Looper.getMainLooper()).postAtTime(() -> {
+          // not if it was restarted in the meantime
+          if (MetronomeUtil.this.startCount == startCount) {
+            stop();
+          }
+        }, endTime);
+      }
+    });
+  }
+
+  public void setKeepAudioWarm(boolean keepWarm) {
+    audioUtil.setKeepWarm(keepWarm);
+  }
+
+  public void prepareAudio() {
+    // pre-arms the track while the app is visible, it is released again after a timeout
+    if (fromService && !isPlaying()) {
+      resetHandlersIfRequired();
+      tickHandler.post(audioUtil::warmUp);
+    }
+  }
+
   public void stop() {
     if (!isPlaying()) {
       return;
@@ -273,16 +548,29 @@ public class MetronomeUtil {
     elapsedPrevious = elapsedTime;
 
     playing = false;
-    audioUtil.stop();
-    isCountingIn = false;
-
     if (fromService) {
+      // a start that was not yet processed by the audio thread must not run after this
       removeHandlerCallbacks();
     }
+    audioUtil.stop();
+    if (BuildConfig.DEBUG) {
+      stopAllocCounting();
+    }
+    isCountingIn = false;
 
     for (MetronomeListener listener : listeners) {
+      if (program != null) {
+        // back to the regular setup
+        listener.onMetronomeSectionChanged(-1);
+      }
+      if (ramp != null) {
+        // the next start ramps from the set tempo again
+        listener.onMetronomeRampTempoChanged(getTempo());
+      }
       listener.onMetronomeStop();
     }
+    program = null;
+    ramp = null;
     Log.i(TAG, "stop: stopped metronome handler");
   }
 
@@ -292,10 +580,19 @@ public class MetronomeUtil {
 
   public void setBeats(String[] beats) {
     this.beats = beats;
-    sharedPrefs.edit().putString(PREF.BEATS, String.join(",", beats)).apply();
-    if (isTimerActive() && timerUnit.equals(UNIT.BARS)) {
-      updateTimerHandler(isPlaying() ? 0 : timerProgress, true);
+    if (beatVelocities.length != beats.length) {
+      beatVelocities = getResizedVelocities(beatVelocities, beats.length);
     }
+    if (groups.length > 0 && groups.length != beats.length) {
+      // each group is one beat, adding or removing beats ends the additive meter
+      groups = new int[0];
+    }
+    updateTickTypes();
+    sharedPrefs.edit()
+        .putString(PREF.BEATS, String.join(",", beats))
+        .putString(PREF.BEAT_VELOCITIES, getVelocitiesString(beatVelocities))
+        .putString(PREF.GROUPS, getGroupsString(groups))
+        .apply();
   }
 
   public String[] getBeats() {
@@ -332,8 +629,13 @@ public class MetronomeUtil {
 
   public void setSubdivisions(String[] subdivisions) {
     this.subdivisions = subdivisions;
+    if (subdivisionVelocities.length != subdivisions.length) {
+      subdivisionVelocities = getResizedVelocities(subdivisionVelocities, subdivisions.length);
+    }
+    updateTickTypes();
     sharedPrefs.edit()
         .putString(PREF.SUBDIVISIONS, String.join(",", getSubdivisions()))
+        .putString(PREF.SUBDIVISION_VELOCITIES, getVelocitiesString(subdivisionVelocities))
         .apply();
   }
 
@@ -371,8 +673,264 @@ public class MetronomeUtil {
     return true;
   }
 
+  public void setBeatVelocity(int beat, int velocity) {
+    int[] velocities = Arrays.copyOf(beatVelocities, beatVelocities.length);
+    velocities[beat] = velocity;
+    beatVelocities = velocities;
+    updateTickTypes();
+    sharedPrefs.edit()
+        .putString(PREF.BEAT_VELOCITIES, getVelocitiesString(velocities))
+        .apply();
+  }
+
+  public int[] getBeatVelocities() {
+    return beatVelocities;
+  }
+
+  public void setSubdivisionVelocity(int subdivision, int velocity) {
+    int[] velocities = Arrays.copyOf(subdivisionVelocities, subdivisionVelocities.length);
+    velocities[subdivision] = velocity;
+    subdivisionVelocities = velocities;
+    updateTickTypes();
+    sharedPrefs.edit()
+        .putString(PREF.SUBDIVISION_VELOCITIES, getVelocitiesString(velocities))
+        .apply();
+  }
+
+  public int[] getSubdivisionVelocities() {
+    return subdivisionVelocities;
+  }
+
+  private static int[] getVelocities(String pref, int length) {
+    int[] velocities = new int[length];
+    Arrays.fill(velocities, Constants.VELOCITY_MAX);
+    String[] values = pref.split(",");
+    for (int i = 0; i < Math.min(values.length, length); i++) {
+      try {
+        int velocity = Integer.parseInt(values[i]);
+        velocities[i] = Math.max(0, Math.min(velocity, Constants.VELOCITY_MAX));
+      } catch (NumberFormatException e) {
+        // keeps the full velocity for missing or invalid values
+      }
+    }
+    return velocities;
+  }
+
+  private static int[] getResizedVelocities(int[] velocities, int length) {
+    int[] resized = Arrays.copyOf(velocities, length);
+    if (length > velocities.length) {
+      // added beats and subdivisions start at full velocity
+      Arrays.fill(resized, velocities.length, length, Constants.VELOCITY_MAX);
+    }
+    return resized;
+  }
+
+  private static String getVelocitiesString(int[] velocities) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < velocities.length; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(velocities[i]);
+    }
+    return builder.toString();
+  }
+
+  public void setVoices(String[][] voices) {
+    this.voices = voices;
+    updateTickTypes();
+    sharedPrefs.edit().putString(PREF.VOICES, getVoicesString(voices)).apply();
+  }
+
+  public String[][] getVoices() {
+    return voices;
+  }
+
+  public void setVoicePulse(int voice, int pulse, String tickType) {
+    String[][] voices = Arrays.copyOf(this.voices, this.voices.length);
+    voices[voice] = Arrays.copyOf(voices[voice], voices[voice].length);
+    voices[voice][pulse] = tickType;
+    setVoices(voices);
+  }
+
+  public void setPolyrhythm(int beatCount, int pulseCount) {
+    // beats play against one voice, like the swing presets this replaces the pattern
+    String[] beats = new String[beatCount];
+    Arrays.fill(beats, TICK_TYPE.NORMAL);
+    beats[0] = TICK_TYPE.STRONG;
+    String[] pulses = new String[pulseCount];
+    Arrays.fill(pulses, TICK_TYPE.SUB);
+    setVoices(new String[][]{pulses});
+    setBeats(beats);
+  }
+
+  public void clearPolyrhythm() {
+    setVoices(new String[0][]);
+  }
+
+  public boolean isPolyrhythmActive() {
+    return voices.length > 0;
+  }
+
+  public boolean isPolyrhythm(int beatCount, int pulseCount) {
+    return beats.length == beatCount && voices.length == 1 && voices[0].length == pulseCount;
+  }
+
+  public void setGroups(int... groups) {
+    // like the polyrhythm presets this replaces the pattern, one beat for each group
+    String[] beats = new String[groups.length];
+    Arrays.fill(beats, TICK_TYPE.NORMAL);
+    beats[0] = TICK_TYPE.STRONG;
+    this.groups = groups;
+    setBeats(beats);
+  }
+
+  public void clearGroups() {
+    groups = new int[0];
+    updateTickTypes();
+    sharedPrefs.edit().putString(PREF.GROUPS, getGroupsString(groups)).apply();
+  }
+
+  public int[] getGroups() {
+    return groups;
+  }
+
+  public boolean isGroupsActive() {
+    return groups.length > 0;
+  }
+
+  public boolean isGroups(int... groups) {
+    return Arrays.equals(this.groups, groups);
+  }
+
+  private static int[] getGroups(String pref, int beatCount) {
+    if (pref.isEmpty()) {
+      return new int[0];
+    }
+    String[] values = pref.split(",");
+    if (values.length != beatCount) {
+      return new int[0];
+    }
+    int[] groups = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      try {
+        groups[i] = Math.max(1, Math.min(Integer.parseInt(values[i]), Constants.SUBS_MAX));
+      } catch (NumberFormatException e) {
+        Log.e(TAG, "getGroups: invalid groups '" + pref + "'", e);
+        return new int[0];
+      }
+    }
+    return groups;
+  }
+
+  private static String getGroupsString(int[] groups) {
+    String[] values = new String[groups.length];
+    for (int i = 0; i < groups.length; i++) {
+      values[i] = String.valueOf(groups[i]);
+    }
+    return String.join(",", values);
+  }
+
+  private static String[][] getVoices(String pref) {
+    if (pref.isEmpty()) {
+      return new String[0][];
+    }
+    String[] values = pref.split(";");
+    String[][] voices = new String[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      voices[i] = values[i].split(",");
+    }
+    return voices;
+  }
+
+  private static String getVoicesString(String[][] voices) {
+    String[] values = new String[voices.length];
+    for (int i = 0; i < voices.length; i++) {
+      values[i] = String.join(",", voices[i]);
+    }
+    return String.join(";", values);
+  }
+
+  public void setSections(Section[] sections) {
+    this.sections = sections;
+    audioUtil.setProgramSounds(getSectionSounds());
+    String[] values = new String[sections.length];
+    for (int i = 0; i < sections.length; i++) {
+      values[i] = sections[i].toString();
+    }
+    sharedPrefs.edit().putString(PREF.PROGRAM, String.join(";", values)).apply();
+  }
+
+  public Section[] getSections() {
+    return sections;
+  }
+
+  public boolean addSection() {
+    if (sections.length >= Constants.SECTIONS_MAX) {
+      return false;
+    }
+    // the current setup is copied, it can be changed for the next section afterwards
+    Section[] sections = Arrays.copyOf(this.sections, this.sections.length + 1);
+    sections[sections.length - 1] = new Section(
+        tempo,
+        Arrays.copyOf(beats, beats.length),
+        Arrays.copyOf(getSubdivisions(), getSubdivisionsCount()),
+        getSound(),
+        programBars
+    );
+    setSections(sections);
+    return true;
+  }
+
+  public void clearSections() {
+    setSections(new Section[0]);
+  }
+
+  public boolean isProgramActive() {
+    return sections.length > 0;
+  }
+
+  public int getProgramBarsCount() {
+    int bars = 0;
+    for (Section section : sections) {
+      bars += section.getBars();
+    }
+    return bars;
+  }
+
+  public void setProgramBars(int bars) {
+    programBars = bars;
+    sharedPrefs.edit().putInt(PREF.PROGRAM_BARS, bars).apply();
+  }
+
+  public int getProgramBars() {
+    return programBars;
+  }
+
+  private String[] getSectionSounds() {
+    String[] sounds = new String[sections.length];
+    for (int i = 0; i < sections.length; i++) {
+      sounds[i] = sections[i].getSound();
+    }
+    return sounds;
+  }
+
+  private static Section[] getSections(String pref) {
+    List<Section> sections = new ArrayList<>();
+    if (!pref.isEmpty()) {
+      for (String value : pref.split(";")) {
+        Section section = Section.fromString(value);
+        if (section != null) {
+          sections.add(section);
+        }
+      }
+    }
+    return sections.toArray(new Section[0]);
+  }
+
   public void setSubdivisionsUsed(boolean used) {
     useSubdivisions = used;
+    updateTickTypes();
     sharedPrefs.edit().putBoolean(PREF.USE_SUBS, used).apply();
   }
 
@@ -441,23 +999,29 @@ public class MetronomeUtil {
     return isSwing3() || isSwing5() || isSwing7();
   }
 
-  public void setTempo(int tempo) {
+  public void setTempo(float tempo) {
+    tempo = Math.round(tempo * 10) / 10f;
     if (this.tempo != tempo) {
       this.tempo = tempo;
-      sharedPrefs.edit().putInt(PREF.TEMPO, tempo).apply();
-      if (isTimerActive() && timerUnit.equals(UNIT.BARS)) {
-        updateTimerHandler(false);
-      }
+      sharedPrefs.edit().putFloat(PREF.TEMPO, tempo).apply();
     }
   }
 
-  public int getTempo() {
+  public float getTempo() {
     return tempo;
   }
 
-  private void changeTempo(int change) {
-    int tempoOld = getTempo();
-    int tempoNew = tempoOld + change;
+  public static boolean isTempoWhole(float tempo) {
+    return tempo == (int) tempo;
+  }
+
+  public static String getTempoString(float tempo) {
+    return new DecimalFormat("0.#").format(tempo);
+  }
+
+  private void changeTempo(float change) {
+    float tempoOld = getTempo();
+    float tempoNew = tempoOld + change;
     // setTempo will only be called by callback below, else we would break timer animation
     for (MetronomeListener listener : listeners) {
       listener.onMetronomeTempoChanged(tempoOld, tempoNew);
@@ -465,7 +1029,17 @@ public class MetronomeUtil {
   }
 
   public long getInterval() {
-    return 1000 * 60 / tempo;
+    return (long) (1000 * 60 / tempo);
+  }
+
+  public long getBarInterval() {
+    // additive meters count pulses, their bars are longer than their number of beats
+    TickTable table = tickTable;
+    return (long) (1000 * 60 / tempo * table.barUnits / table.unitsPerBeat);
+  }
+
+  public TickTable getTickTable() {
+    return tickTable;
   }
 
   public void setSound(String sound) {
@@ -477,6 +1051,45 @@ public class MetronomeUtil {
     return sharedPrefs.getString(PREF.SOUND, DEF.SOUND);
   }
 
+  public void setSynthWaveform(String waveform) {
+    audioUtil.setSynthWaveform(waveform);
+    sharedPrefs.edit().putString(PREF.SYNTH_WAVEFORM, waveform).apply();
+  }
+
+  public String getSynthWaveform() {
+    return sharedPrefs.getString(PREF.SYNTH_WAVEFORM, DEF.SYNTH_WAVEFORM);
+  }
+
+  public void setSynthFrequency(String tickType, int frequency) {
+    audioUtil.setSynthFrequency(tickType, frequency);
+    sharedPrefs.edit().putInt(PREF.SYNTH_FREQUENCY + tickType, frequency).apply();
+  }
+
+  public int getSynthFrequency(String tickType) {
+    int def;
+    switch (tickType) {
+      case TICK_TYPE.STRONG:
+        def = DEF.SYNTH_FREQUENCY_STRONG;
+        break;
+      case TICK_TYPE.SUB:
+        def = DEF.SYNTH_FREQUENCY_SUB;
+        break;
+      default:
+        def = DEF.SYNTH_FREQUENCY_NORMAL;
+        break;
+    }
+    return sharedPrefs.getInt(PREF.SYNTH_FREQUENCY + tickType, def);
+  }
+
+  public void setSynthDecay(String tickType, int decay) {
+    audioUtil.setSynthDecay(tickType, decay);
+    sharedPrefs.edit().putInt(PREF.SYNTH_DECAY + tickType, decay).apply();
+  }
+
+  public int getSynthDecay(String tickType) {
+    return sharedPrefs.getInt(PREF.SYNTH_DECAY + tickType, DEF.SYNTH_DECAY);
+  }
+
   public void setBeatModeVibrate(boolean vibrate) {
     if (!hapticUtil.hasVibrator()) {
       vibrate = false;
@@ -572,7 +1185,7 @@ public class MetronomeUtil {
   }
 
   public long getCountInInterval() {
-    return getInterval() * getBeatsCount() * countIn;
+    return getBarInterval() * countIn;
   }
 
   public void setIncrementalAmount(int bpm) {
@@ -626,7 +1239,8 @@ public class MetronomeUtil {
       return;
     }
     incrementalHandler.removeCallbacksAndMessages(null);
-    if (!incrementalUnit.equals(UNIT.BARS) && isIncrementalActive()) {
+    if (!incrementalUnit.equals(UNIT.BARS) && isIncrementalActive() && program == null
+        && ramp == null) {
       long factor = incrementalUnit.equals(UNIT.SECONDS) ? 1000L : 60000L;
       long interval = factor * incrementalInterval;
       incrementalHandler.postDelayed(new Runnable() {
@@ -639,6 +1253,86 @@ public class MetronomeUtil {
     }
   }
 
+  public void setRampTempo(int tempo) {
+    rampTempo = tempo;
+    sharedPrefs.edit().putInt(PREF.RAMP_TEMPO, tempo).apply();
+  }
+
+  public int getRampTempo() {
+    return rampTempo;
+  }
+
+  public void setRampDuration(int duration) {
+    rampDuration = duration;
+    sharedPrefs.edit().putInt(PREF.RAMP_DURATION, duration).apply();
+  }
+
+  public int getRampDuration() {
+    return rampDuration;
+  }
+
+  public boolean isRampActive() {
+    return rampDuration > 0;
+  }
+
+  public void setRampUnit(String unit) {
+    rampUnit = unit;
+    sharedPrefs.edit().putString(PREF.RAMP_UNIT, unit).apply();
+  }
+
+  public String getRampUnit() {
+    return rampUnit;
+  }
+
+  public void setRampExponential(boolean exponential) {
+    rampExponential = exponential;
+    sharedPrefs.edit().putBoolean(PREF.RAMP_EXPONENTIAL, exponential).apply();
+  }
+
+  public boolean isRampExponential() {
+    return rampExponential;
+  }
+
+  public void setMutePlay(int bars) {
+    mutePlay = bars;
+    sharedPrefs.edit().putInt(PREF.MUTE_PLAY, bars).apply();
+  }
+
+  public int getMutePlay() {
+    return mutePlay;
+  }
+
+  public void setMuteMute(int bars) {
+    muteMute = bars;
+    sharedPrefs.edit().putInt(PREF.MUTE_MUTE, bars).apply();
+  }
+
+  public int getMuteMute() {
+    return muteMute;
+  }
+
+  public void setMuteRandom(int percent) {
+    muteRandom = percent;
+    sharedPrefs.edit().putInt(PREF.MUTE_RANDOM, percent).apply();
+  }
+
+  public int getMuteRandom() {
+    return muteRandom;
+  }
+
+  public boolean isMuteActive() {
+    return muteMute > 0 || muteRandom > 0;
+  }
+
+  public void setMuteHide(boolean hide) {
+    muteHide = hide;
+    sharedPrefs.edit().putBoolean(PREF.MUTE_HIDE, hide).apply();
+  }
+
+  public boolean getMuteHide() {
+    return muteHide;
+  }
+
   public void setShowElapsed(boolean show) {
     showElapsed = show;
     sharedPrefs.edit().putBoolean(PREF.SHOW_ELAPSED, show).apply();
@@ -726,7 +1420,7 @@ public class MetronomeUtil {
         factor = 60000L;
         break;
       default:
-        factor = getInterval() * getBeatsCount();
+        factor = getBarInterval();
         break;
     }
     return factor * timerDuration;
@@ -760,7 +1454,10 @@ public class MetronomeUtil {
 
   public float getTimerProgress() {
     if (isTimerActive()) {
-      if (!timerUnit.equals(UNIT.BARS) && isPlaying() && !isCountingIn) {
+      int slot = getHeardTimerSlot();
+      if (slot >= 0) {
+        return Math.min(1, timerPositions.positions[slot] / timerDuration);
+      } else if (!timerUnit.equals(UNIT.BARS) && isPlaying() && !isCountingIn) {
         long previousDuration = (long) (timerProgress * getTimerInterval());
         long elapsedTime = System.currentTimeMillis() - timerStartTime + previousDuration;
         float fraction = elapsedTime / (float) getTimerInterval();
@@ -773,6 +1470,13 @@ public class MetronomeUtil {
     }
   }
 
+  private int getHeardTimerSlot() {
+    if (!timerUnit.equals(UNIT.BARS) || !isPlaying()) {
+      return -1;
+    }
+    return timerPositions.find(SystemClock.uptimeMillis());
+  }
+
   public boolean equalsTimerProgress(float fraction) {
     try {
       BigDecimal bdProgress = BigDecimal.valueOf(getTimerProgress()).setScale(
@@ -794,43 +1498,35 @@ public class MetronomeUtil {
     if (!fromService || !isPlaying()) {
       return;
     }
-    stopTimerAnimator();
     timerHandler.removeCallbacksAndMessages(null);
     if (!isTimerActive()) {
       return;
     }
 
-    if (equalsTimerProgress(1)) {
-      timerProgress = 0;
-    } else if (startAtFirstBeat) {
-      // set timer progress on start of this bar
-      long progressInterval = (long) (getTimerProgress() * getTimerInterval());
-      long barInterval = getInterval() * getBeatsCount();
-      int progressBarCount = (int) (progressInterval / barInterval);
-      long progressIntervalFullBars = progressBarCount * barInterval;
-      timerProgress = (float) progressIntervalFullBars / getTimerInterval();
-    }
-
     if (timerUnit.equals(UNIT.BARS)) {
-      timerAnimator = ValueAnimator.ofFloat(timerProgress, 1);
-      timerAnimator.addUpdateListener(animation -> {
-        if (isPlaying()) {
-          timerProgress = (float) animation.getAnimatedValue();
-        } else {
-          stopTimerAnimator();
-        }
-      });
-      timerAnimator.addListener(new AnimatorListenerAdapter() {
-        @Override
-        public void onAnimationEnd(Animator animation) {
-          new Handler(Looper.getMainLooper()).post(() -> stop());
-          timerAnimator = null;
-        }
+      // counted by the audio thread, continued from the start of the next bar
+      int startBar = (int) (timerProgress * timerDuration);
+      if (startBar >= timerDuration) {
+        startBar = 0;
+      }
+      timerProgress = (float) startBar / timerDuration;
+      int timerStartBar = startBar;
+      tickHandler.post(() -> {
+        this.timerStartBar = timerStartBar;
+        timerBaseBar = -1;
+        timerPositions.clear();
       });
-      timerAnimator.setDuration(getTimerIntervalRemaining());
-      timerAnimator.setInterpolator(new LinearInterpolator());
-      timerAnimator.start();
     } else {
+      if (equalsTimerProgress(1)) {
+        timerProgress = 0;
+      } else if (startAtFirstBeat) {
+        // set timer progress on start of this bar
+        long progressInterval = (long) (getTimerProgress() * getTimerInterval());
+        long barInterval = getBarInterval();
+        int progressBarCount = (int) (progressInterval / barInterval);
+        long progressIntervalFullBars = progressBarCount * barInterval;
+        timerProgress = (float) progressIntervalFullBars / getTimerInterval();
+      }
       timerHandler.postDelayed(
           () -> new Handler(Looper.getMainLooper()).post(this::stop), getTimerIntervalRemaining()
       );
@@ -852,37 +1548,31 @@ public class MetronomeUtil {
     }
   }
 
-  private void stopTimerAnimator() {
-    if (timerAnimator != null) {
-      timerAnimator.pause();
-      timerAnimator.removeAllListeners();
-      timerAnimator.removeAllUpdateListeners();
-      timerAnimator.cancel();
-      timerAnimator = null;
-    }
-  }
-
   public String getCurrentTimerString() {
     if (!isTimerActive()) {
       return "";
     }
-    long elapsedTime = (long) (getTimerProgress() * getTimerInterval());
     switch (timerUnit) {
       case UNIT.SECONDS:
       case UNIT.MINUTES:
+        long elapsedTime = (long) (getTimerProgress() * getTimerInterval());
         int seconds = (int) (elapsedTime / 1000);
         int minutes = seconds / 60;
         return String.format(Locale.ENGLISH, "%02d:%02d", minutes, seconds % 60);
       default:
-        long barInterval = getInterval() * getBeatsCount();
-        int progressBarCount = Math.min((int) (elapsedTime / barInterval), timerDuration - 1);
-
-        long elapsedTimeFullBars = progressBarCount * barInterval;
-        long remaining = elapsedTime - elapsedTimeFullBars;
-        int beatCount = Math.min((int) (remaining / getInterval()), getBeatsCount() - 1);
-
+        int bar, beat;
+        int slot = getHeardTimerSlot();
+        if (slot >= 0) {
+          // bar and beat of the tick that was heard last
+          bar = timerPositions.bars[slot];
+          beat = timerPositions.beats[slot] - 1;
+        } else {
+          float position = getTimerProgress() * timerDuration;
+          bar = Math.min((int) position, timerDuration - 1);
+          beat = Math.min((int) ((position - bar) * getBeatsCount()), getBeatsCount() - 1);
+        }
         String format = getBeatsCount() < 10 ? "%d.%01d" : "%d.%02d";
-        return String.format(Locale.ENGLISH, format, progressBarCount + 1, beatCount + 1);
+        return String.format(Locale.ENGLISH, format, bar + 1, beat + 1);
     }
   }
 
@@ -902,39 +1592,39 @@ public class MetronomeUtil {
     }
   }
 
-  private void performTick(Tick tick) {
-    latencyHandler.postDelayed(() -> {
-      for (MetronomeListener listener : listeners) {
-        listener.onMetronomePreTick(tick);
-      }
-    }, Math.max(0, latency - Constants.BEAT_ANIM_OFFSET));
-    latencyHandler.postDelayed(() -> {
-      if (beatModeVibrate || alwaysVibrate) {
-        switch (tick.type) {
-          case TICK_TYPE.STRONG:
-            hapticUtil.heavyClick();
-            break;
-          case TICK_TYPE.SUB:
-            hapticUtil.tick();
-            break;
-          case TICK_TYPE.MUTED:
-            break;
-          default:
-            hapticUtil.click();
+  private void performTick(Tick tick, long barIndex, int startedSection) {
+    long tickTime = audioUtil.getFrameTime(tick.frame);
+    tick.time = tickTime + latency;
+    boolean isCountIn = barIndex < getCountIn();
+    // decided for each period, muted bars stay in time with the ones around them
+    tick.muted = muteTrainer != null && !isCountIn
+        && muteTrainer.isMuted(barIndex - getCountIn(), tick.subdivision);
+    // consumers drain their queues at their own cadence, the audio thread never waits for them
+    for (TickQueue queue : tickQueueArray) {
+      queue.offer(tick);
+    }
+    if (beatModeVibrate || alwaysVibrate) {
+      hapticQueue.offer(tick);
+      latencyHandler.sendEmptyMessageAtTime(MSG_TICK, tick.time);
+    }
+
+    if (startedSection >= 0) {
+      // shown when the first tick of the section is heard
+      countInHandler.postAtTime(() -> {
+        for (MetronomeListener listener : listeners) {
+          listener.onMetronomeSectionChanged(startedSection);
         }
+      }, tickTime + latency);
+    }
+    boolean isBarStart = tick.beat == 1 && tick.subdivision == 1;
+    if (isBarStart) {
+      if (barIndex == getCountIn()) {
+        // first bar after count-in, 0 if count-in is disabled
+        countInHandler.postAtTime(this::onCountInFinished, tickTime + latency);
       }
-      for (MetronomeListener listener : listeners) {
-        listener.onMetronomeTick(tick);
-      }
-    }, latency);
-
-    boolean isBeat = tick.subdivision == 1;
-    boolean isFirstBeat = ((tick.index / getSubdivisionsCount()) % getBeatsCount()) == 0;
-    if (isBeat && isFirstBeat) {
-      long beatIndex = tick.index / getSubdivisionsCount();
-      long barIndex = beatIndex / getBeatsCount();
-      boolean isCountIn = barIndex < getCountIn();
-      if (isIncrementalActive() && incrementalUnit.equals(UNIT.BARS) && !isCountIn) {
+      // programs and ramps define the tempo themselves
+      boolean isIncremental = isIncrementalActive() && program == null && ramp == null;
+      if (isIncremental && incrementalUnit.equals(UNIT.BARS) && !isCountIn) {
         barIndex = barIndex - getCountIn();
         if (barIndex >= incrementalInterval && barIndex % incrementalInterval == 0) {
           changeTempo(incrementalAmount * (incrementalIncrease ? 1 : -1));
@@ -943,60 +1633,381 @@ public class MetronomeUtil {
     }
   }
 
-  private int getCurrentBeat() {
-    return (int) ((tickIndex / getSubdivisionsCount()) % beats.length) + 1;
+  private boolean handleCallbackMessage(Message message) {
+    if (message.what == MSG_RAMP_TEMPO) {
+      float tempo = Float.intBitsToFloat(message.arg1);
+      for (MetronomeListener listener : listeners) {
+        listener.onMetronomeRampTempoChanged(tempo);
+      }
+      return true;
+    } else if (message.what != MSG_TICK) {
+      return false;
+    }
+    while (hapticQueue.poll(SystemClock.uptimeMillis(), hapticTick)) {
+      if (hapticTick.muted) {
+        continue;
+      }
+      switch (hapticTick.type) {
+        case TICK_TYPE_ID.STRONG:
+          hapticUtil.heavyClick();
+          break;
+        case TICK_TYPE_ID.SUB:
+          hapticUtil.tick();
+          break;
+        case TICK_TYPE_ID.MUTED:
+          break;
+        default:
+          hapticUtil.click();
+      }
+    }
+    return true;
   }
 
-  private int getCurrentSubdivision() {
-    return (int) (tickIndex % getSubdivisionsCount()) + 1;
+  // the platform has no replacement for per-thread allocation counts, only used in debug builds
+  @SuppressWarnings("deprecation")
+  private static void startAllocCounting() {
+    Debug.startAllocCounting();
   }
 
-  private String getCurrentTickType() {
-    int subdivisionsCount = getSubdivisionsCount();
-    if ((tickIndex % subdivisionsCount) == 0) {
-      return beats[(int) ((tickIndex / subdivisionsCount) % beats.length)];
-    } else {
-      return subdivisions[(int) (tickIndex % subdivisionsCount)];
+  @SuppressWarnings("deprecation")
+  private static void stopAllocCounting() {
+    Debug.stopAllocCounting();
+  }
+
+  @SuppressWarnings("deprecation")
+  private static int getThreadAllocCount() {
+    return Debug.getThreadAllocCount();
+  }
+
+  private void checkTickAllocations(int allocCount) {
+    allocatingTicks = allocCount > 0 ? allocatingTicks + 1 : 0;
+    if (allocatingTicks >= ALLOC_CHECK_TICKS) {
+      throw new IllegalStateException(
+          "Tick path allocated in " + allocatingTicks + " consecutive steady-state ticks"
+      );
+    }
+  }
+
+  private void updateTickTypes() {
+    // compiled here once instead of for every tick on the audio thread
+    tickTable = new TickTable(
+        Tick.getTypeIds(beats), Tick.getTypeIds(getSubdivisions()),
+        beatVelocities, subdivisionVelocities, groups
+    );
+    int[][] voiceTypes = new int[voices.length][];
+    for (int i = 0; i < voices.length; i++) {
+      voiceTypes[i] = Tick.getTypeIds(voices[i]);
+    }
+    this.voiceTypes = voiceTypes;
+  }
+
+  private void onCountInFinished() {
+    isCountingIn = false;
+    updateIncrementalHandler();
+    elapsedStartTime = System.currentTimeMillis();
+    updateElapsedHandler(resetElapsed && resetElapsedAndTimer);
+    timerStartTime = System.currentTimeMillis();
+    if (!timerUnit.equals(UNIT.BARS)) {
+      updateTimerHandler(resetTimer && resetElapsedAndTimer ? 0 : timerProgress, true);
+    } else if (isTimerActive()) {
+      // already counted by the audio thread since the end of the count-in
+      for (MetronomeListener listener : listeners) {
+        listener.onMetronomeTimerStarted();
+      }
     }
   }
 
   public interface MetronomeListener {
     void onMetronomeStart();
     void onMetronomeStop();
-    void onMetronomePreTick(Tick tick);
-    void onMetronomeTick(Tick tick);
-    void onMetronomeTempoChanged(int tempoOld, int tempoNew);
+    void onMetronomeTempoChanged(float tempoOld, float tempoNew);
     void onElapsedTimeSecondsChanged();
     void onMetronomeTimerStarted();
     void onTimerSecondsChanged();
     void onMetronomeConnectionMissing();
     void onPermissionMissing();
+    void onMetronomeSectionChanged(int section);
+    void onMetronomeRampTempoChanged(float tempo);
   }
 
   public static class MetronomeListenerAdapter implements MetronomeListener {
     public void onMetronomeStart() {}
     public void onMetronomeStop() {}
-    public void onMetronomePreTick(Tick tick) {}
-    public void onMetronomeTick(Tick tick) {}
-    public void onMetronomeTempoChanged(int tempoOld, int tempoNew) {}
+    public void onMetronomeTempoChanged(float tempoOld, float tempoNew) {}
     public void onElapsedTimeSecondsChanged() {}
     public void onMetronomeTimerStarted() {}
     public void onTimerSecondsChanged() {}
     public void onMetronomeConnectionMissing() {}
     public void onPermissionMissing() {}
+    public void onMetronomeSectionChanged(int section) {}
+    public void onMetronomeRampTempoChanged(float tempo) {}
+  }
+
+  static class Program {
+
+    // sections compiled into per-section tables and tick positions, looked up by index
+    final float[] tempos;
+    final TickTable[] tables;
+    final int[][] voiceTypes = new int[0][];
+    // first tick of each section, followed by the end of the program
+    final long[] startTicks;
+
+    Program(Section[] sections, int countIn) {
+      int count = sections.length;
+      tempos = new float[count];
+      tables = new TickTable[count];
+      startTicks = new long[count + 1];
+      for (int i = 0; i < count; i++) {
+        Section section = sections[i];
+        tempos[i] = section.getTempo();
+        int[] beatTypes = Tick.getTypeIds(section.getBeats());
+        int[] subdivisionTypes = Tick.getTypeIds(section.getSubdivisions());
+        int[] beatVelocities = new int[beatTypes.length];
+        Arrays.fill(beatVelocities, Constants.VELOCITY_MAX);
+        int[] subdivisionVelocities = new int[subdivisionTypes.length];
+        Arrays.fill(subdivisionVelocities, Constants.VELOCITY_MAX);
+        tables[i] = new TickTable(
+            beatTypes, subdivisionTypes, beatVelocities, subdivisionVelocities, new int[0]
+        );
+        // the count-in is played with the first section
+        int bars = section.getBars() + (i == 0 ? countIn : 0);
+        startTicks[i + 1] = startTicks[i] + (long) bars * tables[i].size;
+      }
+    }
+
+    long getEndTick() {
+      return startTicks[startTicks.length - 1];
+    }
+  }
+
+  static class Ramp {
+
+    private final float startTempo, endTempo;
+    private final int duration;
+    private final String unit;
+    private final boolean exponential;
+    // share of the duration that was already played
+    private double progress;
+
+    Ramp(float startTempo, float endTempo, int duration, String unit, boolean exponential) {
+      this.startTempo = startTempo;
+      this.endTempo = endTempo;
+      this.duration = duration;
+      this.unit = unit;
+      this.exponential = exponential;
+    }
+
+    float getTempo() {
+      if (progress >= 1) {
+        return endTempo;
+      } else if (exponential) {
+        // equal tempo ratios in equal times, sounds even over wide ranges
+        return (float) (startTempo * Math.pow(endTempo / startTempo, progress));
+      } else {
+        return (float) (startTempo + (endTempo - startTempo) * progress);
+      }
+    }
+
+    boolean isFinished() {
+      return progress >= 1;
+    }
+
+    void advance(float tempo, TickTable table, int tickInBar) {
+      // by the length of the period that was just played at the given tempo
+      int length = table.lengths[tickInBar];
+      switch (unit) {
+        case UNIT.SECONDS:
+          progress += 60.0 / tempo * length / table.unitsPerBeat / duration;
+          break;
+        case UNIT.MINUTES:
+          progress += 1.0 / tempo * length / table.unitsPerBeat / duration;
+          break;
+        default:
+          progress += (double) length / table.barUnits / duration;
+          break;
+      }
+    }
+  }
+
+  static class MuteTrainer {
+
+    private final int playBars, muteBars, randomPercent;
+    // nextInt does not allocate
+    private final Random random = new Random();
+    private boolean isBeatMuted;
+
+    MuteTrainer(int playBars, int muteBars, int randomPercent) {
+      this.playBars = playBars;
+      this.muteBars = muteBars;
+      this.randomPercent = randomPercent;
+    }
+
+    boolean isMuted(long bar, int subdivision) {
+      if (subdivision == 1) {
+        // subdivisions are muted together with their beat
+        isBeatMuted = randomPercent > 0 && random.nextInt(100) < randomPercent;
+      }
+      boolean isBarMuted = muteBars > 0 && bar % (playBars + muteBars) >= playBars;
+      return isBarMuted || isBeatMuted;
+    }
+  }
+
+  private static class TimerPositions {
+
+    // written by the audio thread ahead of time, read when the ticks are heard
+    final long[] times = new long[TICK_POOL_SIZE];
+    final int[] bars = new int[TICK_POOL_SIZE];
+    final int[] beats = new int[TICK_POOL_SIZE];
+    final float[] positions = new float[TICK_POOL_SIZE];
+    private volatile long head;
+
+    void offer(long time, int bar, int beat, float position) {
+      long head = this.head;
+      int i = (int) (head % TICK_POOL_SIZE);
+      times[i] = time;
+      bars[i] = bar;
+      beats[i] = beat;
+      positions[i] = position;
+      this.head = head + 1;
+    }
+
+    int find(long now) {
+      // slot of the latest position heard at the given time, -1 if there is none
+      long head = this.head;
+      for (long i = head - 1; i >= 0 && i >= head - TICK_POOL_SIZE; i--) {
+        int slot = (int) (i % TICK_POOL_SIZE);
+        if (times[slot] <= now) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    void clear() {
+      head = 0;
+    }
+  }
+
+  public static class TickTable {
+
+    // one entry for each tick of a bar, walked by the audio thread with a single index
+    public final int size, beatCount;
+    public final int[] beats, subdivisions, types, velocities;
+    // period lengths and their start in the bar, in units of which a beat has unitsPerBeat
+    public final int[] lengths, starts;
+    // length of the beat each tick belongs to, in the same units
+    public final int[] beatLengths;
+    public final int unitsPerBeat, barUnits;
+
+    TickTable(
+        int[] beatTypes, int[] subdivisionTypes,
+        int[] beatVelocities, int[] subdivisionVelocities, int[] groups
+    ) {
+      // additive meters count pulses, each beat is a group of them instead of subdivided
+      boolean isGrouped = groups.length > 0 && groups.length == beatTypes.length;
+      int size = 0;
+      for (int beat = 0; beat < beatTypes.length; beat++) {
+        size += isGrouped ? groups[beat] : subdivisionTypes.length;
+      }
+      this.size = size;
+      beatCount = beatTypes.length;
+      beats = new int[size];
+      subdivisions = new int[size];
+      types = new int[size];
+      velocities = new int[size];
+      lengths = new int[size];
+      starts = new int[size];
+      beatLengths = new int[size];
+      unitsPerBeat = isGrouped ? 1 : subdivisionTypes.length;
+
+      int i = 0;
+      int start = 0;
+      for (int beat = 0; beat < beatTypes.length; beat++) {
+        int tickCount = isGrouped ? groups[beat] : subdivisionTypes.length;
+        for (int subdivision = 0; subdivision < tickCount; subdivision++, i++) {
+          beats[i] = beat + 1;
+          subdivisions[i] = subdivision + 1;
+          if (subdivision == 0) {
+            types[i] = beatTypes[beat];
+            velocities[i] = beatVelocities[beat];
+          } else if (isGrouped) {
+            types[i] = TICK_TYPE_ID.SUB;
+            velocities[i] = Constants.VELOCITY_MAX;
+          } else {
+            types[i] = subdivisionTypes[subdivision];
+            velocities[i] = subdivisionVelocities[subdivision];
+          }
+          lengths[i] = 1;
+          beatLengths[i] = tickCount;
+          starts[i] = start;
+          start += lengths[i];
+        }
+      }
+      barUnits = start;
+    }
+
+    public int getNext(int tickInBar) {
+      return tickInBar + 1 < size ? tickInBar + 1 : 0;
+    }
   }
 
   public static class Tick {
-    public final long index;
-    public final int beat, subdivision;
-    @NonNull
-    public final String type;
 
-    public Tick(long index, int beat, int subdivision, @NonNull String type) {
+    private static final String[] TYPE_NAMES = {
+        TICK_TYPE.NORMAL, TICK_TYPE.STRONG, TICK_TYPE.SUB, TICK_TYPE.MUTED
+    };
+
+    // ticks are reused from a pool, listeners must not hold on to them
+    public long index;
+    public int beat, subdivision, type, velocity;
+    // not heard, the type is kept for visuals
+    public boolean muted;
+    // frame position in the audio stream and uptime at which the tick is heard
+    public long frame, time;
+    // duration of the tick's beat in milliseconds, at the tempo it is played with
+    public long beatInterval;
+
+    public void set(
+        long index, int beat, int subdivision, int type, int velocity, long frame
+    ) {
       this.index = index;
       this.beat = beat;
       this.subdivision = subdivision;
       this.type = type;
+      this.velocity = velocity;
+      this.frame = frame;
+      muted = false;
+    }
+
+    @NonNull
+    public String getTypeName() {
+      return getTypeName(type);
+    }
+
+    @NonNull
+    public static String getTypeName(int type) {
+      return TYPE_NAMES[type];
+    }
+
+    public static int getTypeId(@NonNull String type) {
+      switch (type) {
+        case TICK_TYPE.STRONG:
+          return TICK_TYPE_ID.STRONG;
+        case TICK_TYPE.SUB:
+          return TICK_TYPE_ID.SUB;
+        case TICK_TYPE.MUTED:
+          return TICK_TYPE_ID.MUTED;
+        default:
+          return TICK_TYPE_ID.NORMAL;
+      }
+    }
+
+    public static int[] getTypeIds(@NonNull String[] types) {
+      int[] typeIds = new int[types.length];
+      for (int i = 0; i < types.length; i++) {
+        typeIds[i] = getTypeId(types[i]);
+      }
+      return typeIds;
     }
 
     @NonNull
@@ -1005,7 +2016,79 @@ public class MetronomeUtil {
       return "Tick{index = " + index +
           ", beat=" + beat +
           ", sub=" + subdivision +
-          ", type=" + type + '}';
+          ", type=" + getTypeName() +
+          ", velocity=" + velocity +
+          ", muted=" + muted +
+          ", frame=" + frame +
+          ", time=" + time + '}';
+    }
+  }
+
+  public static class TickQueue {
+
+    // lock-free ring buffer for one producer (the audio thread) and one consumer
+    private final long[] indices, frames, times, beatIntervals;
+    private final int[] beats, subdivisions, types, velocities;
+    private final boolean[] muted;
+    private final int mask;
+    private final long lead;
+    private volatile long head, tail;
+
+    public TickQueue(int capacity, long lead) {
+      int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+      indices = new long[size];
+      frames = new long[size];
+      times = new long[size];
+      beatIntervals = new long[size];
+      beats = new int[size];
+      subdivisions = new int[size];
+      types = new int[size];
+      velocities = new int[size];
+      muted = new boolean[size];
+      mask = size - 1;
+      // ticks are polled this many milliseconds before they are heard
+      this.lead = lead;
+    }
+
+    public boolean offer(Tick tick) {
+      long tail = this.tail;
+      if (tail - head > mask) {
+        // consumer is not draining, drop the tick instead of waiting
+        return false;
+      }
+      int i = (int) (tail & mask);
+      indices[i] = tick.index;
+      frames[i] = tick.frame;
+      times[i] = tick.time;
+      beatIntervals[i] = tick.beatInterval;
+      beats[i] = tick.beat;
+      subdivisions[i] = tick.subdivision;
+      types[i] = tick.type;
+      velocities[i] = tick.velocity;
+      muted[i] = tick.muted;
+      this.tail = tail + 1;
+      return true;
+    }
+
+    public boolean poll(long now, Tick tick) {
+      long head = this.head;
+      if (head == tail) {
+        return false;
+      }
+      int i = (int) (head & mask);
+      if (times[i] - lead > now) {
+        return false;
+      }
+      tick.set(indices[i], beats[i], subdivisions[i], types[i], velocities[i], frames[i]);
+      tick.time = times[i];
+      tick.beatInterval = beatIntervals[i];
+      tick.muted = muted[i];
+      this.head = head + 1;
+      return true;
+    }
+
+    public void clear() {
+      head = tail;
     }
   }
 }
\ No newline at end of file
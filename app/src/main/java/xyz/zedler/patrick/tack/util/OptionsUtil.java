@@ -34,6 +34,7 @@ import xyz.zedler.patrick.tack.activity.MainActivity;
 import xyz.zedler.patrick.tack.databinding.PartialDialogOptionsBinding;
 import xyz.zedler.patrick.tack.databinding.PartialOptionsBinding;
 import xyz.zedler.patrick.tack.fragment.MainFragment;
+import xyz.zedler.patrick.tack.model.Section;
 
 public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     OnSliderTouchListener {
@@ -43,7 +44,8 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
   private final PartialOptionsBinding binding;
   private final boolean useDialog;
   private final Runnable onModifiersCountChanged;
-  private boolean isIncrementalActive, isTimerActive;
+  private boolean isIncrementalActive, isRampActive, isTimerActive, isMuteActive;
+  private boolean isProgramActive;
   private DialogUtil dialogUtil;
   private PartialDialogOptionsBinding bindingDialog;
 
@@ -62,12 +64,41 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     binding = useDialog ? bindingDialog.partialOptions : fragment.getBinding().partialOptions;
 
     isIncrementalActive = getMetronomeUtil().isIncrementalActive();
+    isRampActive = getMetronomeUtil().isRampActive();
     isTimerActive = getMetronomeUtil().isTimerActive();
+    isMuteActive = getMetronomeUtil().isMuteActive();
+    isProgramActive = getMetronomeUtil().isProgramActive();
 
     if (binding != null) {
       binding.sliderOptionsIncrementalAmount.addOnSliderTouchListener(this);
       binding.sliderOptionsIncrementalInterval.addOnSliderTouchListener(this);
+      // ramps are created on start, playback starts again with the new one
+      binding.sliderOptionsRampDuration.addOnSliderTouchListener(this);
+      binding.sliderOptionsRampTempo.addOnSliderTouchListener(this);
       binding.sliderOptionsTimerDuration.addOnSliderTouchListener(this);
+      // the trainer is created on start, playback starts again with the new one
+      binding.sliderOptionsMuteMute.addOnSliderTouchListener(this);
+      binding.sliderOptionsMutePlay.addOnSliderTouchListener(this);
+      binding.sliderOptionsMuteRandom.addOnSliderTouchListener(this);
+      binding.buttonOptionsProgramAdd.setOnClickListener(v -> {
+        activity.performHapticClick();
+        // programs are compiled on start, a running one starts again with the new section
+        getMetronomeUtil().savePlayingState();
+        getMetronomeUtil().stop();
+        if (!getMetronomeUtil().addSection()) {
+          activity.showSnackbar(R.string.msg_sections_max);
+        }
+        getMetronomeUtil().restorePlayingState();
+        updateProgram();
+      });
+      binding.buttonOptionsProgramClear.setOnClickListener(v -> {
+        activity.performHapticClick();
+        getMetronomeUtil().savePlayingState();
+        getMetronomeUtil().stop();
+        getMetronomeUtil().clearSections();
+        getMetronomeUtil().restorePlayingState();
+        updateProgram();
+      });
     }
 
     if (useDialog) {
@@ -107,8 +138,13 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     }
     updateCountIn();
     updateIncremental();
+    updateRamp();
     updateTimer();
+    updateMute();
     updateSwing();
+    updatePolyrhythm();
+    updateGroups();
+    updateProgram();
   }
 
   private void updateCountIn() {
@@ -225,6 +261,76 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     binding.toggleOptionsIncrementalUnit.setEnabled(isIncrementalActive);
   }
 
+  private void updateRamp() {
+    int rampDuration = getMetronomeUtil().getRampDuration();
+    int rampTempo = getMetronomeUtil().getRampTempo();
+    boolean isRampActive = getMetronomeUtil().isRampActive();
+    if (this.isRampActive != isRampActive) {
+      this.isRampActive = isRampActive;
+      onModifiersCountChanged.run();
+    }
+    String rampUnit = getMetronomeUtil().getRampUnit();
+    int unitResId, checkedId;
+    switch (rampUnit) {
+      case UNIT.SECONDS:
+        unitResId = R.plurals.options_unit_seconds;
+        checkedId = R.id.button_options_ramp_unit_seconds;
+        break;
+      case UNIT.MINUTES:
+        unitResId = R.plurals.options_unit_minutes;
+        checkedId = R.id.button_options_ramp_unit_minutes;
+        break;
+      default:
+        unitResId = R.plurals.options_unit_bars;
+        checkedId = R.id.button_options_ramp_unit_bars;
+        break;
+    }
+    if (isRampActive) {
+      String unitQuantity = activity.getResources().getQuantityString(
+          unitResId, rampDuration, rampDuration
+      );
+      binding.textOptionsRampDuration.setText(
+          activity.getString(R.string.options_ramp_description, rampTempo, unitQuantity)
+      );
+    } else {
+      binding.textOptionsRampDuration.setText(activity.getString(R.string.options_inactive));
+    }
+
+    binding.sliderOptionsRampDuration.removeOnChangeListener(this);
+    binding.sliderOptionsRampDuration.setValue(rampDuration);
+    binding.sliderOptionsRampDuration.addOnChangeListener(this);
+    binding.sliderOptionsRampDuration.setLabelFormatter(value -> {
+      int duration = (int) value;
+      return activity.getResources().getQuantityString(unitResId, duration, duration);
+    });
+
+    boolean visibleControls = isRampActive || !useDialog;
+    binding.linearMainRampContainer.setVisibility(visibleControls ? View.VISIBLE : View.GONE);
+
+    binding.toggleOptionsRampUnit.removeOnButtonCheckedListener(this);
+    binding.toggleOptionsRampUnit.check(checkedId);
+    binding.toggleOptionsRampUnit.addOnButtonCheckedListener(this);
+    binding.toggleOptionsRampUnit.setEnabled(isRampActive);
+
+    binding.textOptionsRampTempo.setAlpha(isRampActive ? 1 : 0.5f);
+    binding.sliderOptionsRampTempo.removeOnChangeListener(this);
+    binding.sliderOptionsRampTempo.setValue(rampTempo);
+    binding.sliderOptionsRampTempo.addOnChangeListener(this);
+    binding.sliderOptionsRampTempo.setLabelFormatter(
+        value -> activity.getString(R.string.label_bpm_value, (int) value)
+    );
+    binding.sliderOptionsRampTempo.setEnabled(isRampActive);
+
+    binding.toggleOptionsRampCurve.removeOnButtonCheckedListener(this);
+    binding.toggleOptionsRampCurve.check(
+        getMetronomeUtil().isRampExponential()
+            ? R.id.button_options_ramp_exponential
+            : R.id.button_options_ramp_linear
+    );
+    binding.toggleOptionsRampCurve.addOnButtonCheckedListener(this);
+    binding.toggleOptionsRampCurve.setEnabled(isRampActive);
+  }
+
   private void updateTimer() {
     int timerDuration = getMetronomeUtil().getTimerDuration();
     boolean isTimerActive = getMetronomeUtil().isTimerActive();
@@ -288,6 +394,75 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     binding.toggleOptionsTimerUnit.setEnabled(isTimerActive);
   }
 
+  private void updateMute() {
+    int muteMute = getMetronomeUtil().getMuteMute();
+    int mutePlay = getMetronomeUtil().getMutePlay();
+    int muteRandom = getMetronomeUtil().getMuteRandom();
+    boolean isMuteActive = getMetronomeUtil().isMuteActive();
+    if (this.isMuteActive != isMuteActive) {
+      this.isMuteActive = isMuteActive;
+      onModifiersCountChanged.run();
+    }
+
+    if (muteMute > 0) {
+      binding.textOptionsMuteMute.setText(activity.getString(
+          R.string.options_mute_mute,
+          activity.getResources().getQuantityString(R.plurals.options_unit_bars, muteMute, muteMute)
+      ));
+    } else {
+      binding.textOptionsMuteMute.setText(activity.getString(R.string.options_inactive));
+    }
+    binding.sliderOptionsMuteMute.removeOnChangeListener(this);
+    binding.sliderOptionsMuteMute.setValue(muteMute);
+    binding.sliderOptionsMuteMute.addOnChangeListener(this);
+    binding.sliderOptionsMuteMute.setLabelFormatter(
+        value -> activity.getResources().getQuantityString(
+            R.plurals.options_unit_bars, (int) value, (int) value
+        )
+    );
+
+    boolean visibleControls = muteMute > 0 || !useDialog;
+    binding.linearMainMuteContainer.setVisibility(visibleControls ? View.VISIBLE : View.GONE);
+
+    binding.textOptionsMutePlay.setText(activity.getString(
+        R.string.options_mute_play,
+        activity.getResources().getQuantityString(R.plurals.options_unit_bars, mutePlay, mutePlay)
+    ));
+    binding.textOptionsMutePlay.setAlpha(muteMute > 0 ? 1 : 0.5f);
+    binding.sliderOptionsMutePlay.removeOnChangeListener(this);
+    binding.sliderOptionsMutePlay.setValue(mutePlay);
+    binding.sliderOptionsMutePlay.addOnChangeListener(this);
+    binding.sliderOptionsMutePlay.setLabelFormatter(
+        value -> activity.getResources().getQuantityString(
+            R.plurals.options_unit_bars, (int) value, (int) value
+        )
+    );
+    binding.sliderOptionsMutePlay.setEnabled(muteMute > 0);
+
+    if (muteRandom > 0) {
+      binding.textOptionsMuteRandom.setText(
+          activity.getString(R.string.options_mute_random, muteRandom)
+      );
+    } else {
+      binding.textOptionsMuteRandom.setText(activity.getString(R.string.options_inactive));
+    }
+    binding.sliderOptionsMuteRandom.removeOnChangeListener(this);
+    binding.sliderOptionsMuteRandom.setValue(muteRandom);
+    binding.sliderOptionsMuteRandom.addOnChangeListener(this);
+    binding.sliderOptionsMuteRandom.setLabelFormatter(
+        value -> activity.getString(R.string.label_percent_value, (int) value)
+    );
+
+    binding.toggleOptionsMuteVisuals.removeOnButtonCheckedListener(this);
+    binding.toggleOptionsMuteVisuals.check(
+        getMetronomeUtil().getMuteHide()
+            ? R.id.button_options_mute_visuals_hide
+            : R.id.button_options_mute_visuals_show
+    );
+    binding.toggleOptionsMuteVisuals.addOnButtonCheckedListener(this);
+    binding.toggleOptionsMuteVisuals.setEnabled(isMuteActive);
+  }
+
   public void updateSwing() {
     binding.textOptionsSwing.setText(activity.getString(
         getMetronomeUtil().isSwingActive()
@@ -307,6 +482,97 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
     binding.toggleOptionsSwing.addOnButtonCheckedListener(this);
   }
 
+  public void updatePolyrhythm() {
+    binding.textOptionsPolyrhythm.setText(activity.getString(
+        getMetronomeUtil().isPolyrhythmActive()
+            ? R.string.options_polyrhythm_description
+            : R.string.options_inactive
+    ));
+    binding.toggleOptionsPolyrhythm.removeOnButtonCheckedListener(this);
+    if (getMetronomeUtil().isPolyrhythm(3, 2)) {
+      binding.toggleOptionsPolyrhythm.check(R.id.button_options_polyrhythm_3_2);
+    } else if (getMetronomeUtil().isPolyrhythm(4, 3)) {
+      binding.toggleOptionsPolyrhythm.check(R.id.button_options_polyrhythm_4_3);
+    } else if (getMetronomeUtil().isPolyrhythm(5, 4)) {
+      binding.toggleOptionsPolyrhythm.check(R.id.button_options_polyrhythm_5_4);
+    } else if (!getMetronomeUtil().isPolyrhythmActive()) {
+      binding.toggleOptionsPolyrhythm.check(R.id.button_options_polyrhythm_off);
+    } else {
+      binding.toggleOptionsPolyrhythm.clearChecked();
+    }
+    binding.toggleOptionsPolyrhythm.addOnButtonCheckedListener(this);
+  }
+
+  public void updateGroups() {
+    binding.textOptionsGroups.setText(activity.getString(
+        getMetronomeUtil().isGroupsActive()
+            ? R.string.options_groups_description
+            : R.string.options_inactive
+    ));
+    binding.toggleOptionsGroups.removeOnButtonCheckedListener(this);
+    if (getMetronomeUtil().isGroups(2, 3)) {
+      binding.toggleOptionsGroups.check(R.id.button_options_groups_2_3);
+    } else if (getMetronomeUtil().isGroups(2, 2, 3)) {
+      binding.toggleOptionsGroups.check(R.id.button_options_groups_2_2_3);
+    } else if (getMetronomeUtil().isGroups(3, 2, 2)) {
+      binding.toggleOptionsGroups.check(R.id.button_options_groups_3_2_2);
+    } else if (getMetronomeUtil().isGroups(3, 3, 2)) {
+      binding.toggleOptionsGroups.check(R.id.button_options_groups_3_3_2);
+    } else if (!getMetronomeUtil().isGroupsActive()) {
+      binding.toggleOptionsGroups.check(R.id.button_options_groups_off);
+    } else {
+      binding.toggleOptionsGroups.clearChecked();
+    }
+    binding.toggleOptionsGroups.addOnButtonCheckedListener(this);
+  }
+
+  public void updateProgram() {
+    Section[] sections = getMetronomeUtil().getSections();
+    boolean isProgramActive = getMetronomeUtil().isProgramActive();
+    if (this.isProgramActive != isProgramActive) {
+      this.isProgramActive = isProgramActive;
+      onModifiersCountChanged.run();
+    }
+    if (isProgramActive) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < sections.length; i++) {
+        Section section = sections[i];
+        int beats = section.getBeats().length;
+        int bars = section.getBars();
+        if (i > 0) {
+          builder.append('\n');
+        }
+        builder.append(activity.getString(
+            R.string.options_program_section,
+            i + 1,
+            MetronomeUtil.getTempoString(section.getTempo()),
+            activity.getResources().getQuantityString(R.plurals.options_unit_beats, beats, beats),
+            activity.getResources().getQuantityString(R.plurals.options_unit_bars, bars, bars)
+        ));
+      }
+      binding.textOptionsProgram.setText(builder);
+    } else {
+      binding.textOptionsProgram.setText(activity.getString(R.string.options_inactive));
+    }
+    binding.buttonOptionsProgramClear.setEnabled(isProgramActive);
+
+    int programBars = getMetronomeUtil().getProgramBars();
+    binding.textOptionsProgramBars.setText(activity.getString(
+        R.string.options_program_bars,
+        activity.getResources().getQuantityString(
+            R.plurals.options_unit_bars, programBars, programBars
+        )
+    ));
+    binding.sliderOptionsProgramBars.removeOnChangeListener(this);
+    binding.sliderOptionsProgramBars.setValue(programBars);
+    binding.sliderOptionsProgramBars.addOnChangeListener(this);
+    binding.sliderOptionsProgramBars.setLabelFormatter(
+        value -> activity.getResources().getQuantityString(
+            R.plurals.options_unit_bars, (int) value, (int) value
+        )
+    );
+  }
+
   @Override
   public void onButtonChecked(MaterialButtonToggleGroup group, int checkedId, boolean isChecked) {
     if (!isChecked) {
@@ -328,6 +594,27 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
         getMetronomeUtil().setIncrementalUnit(UNIT.MINUTES);
       }
       updateIncremental();
+    } else if (groupId == R.id.toggle_options_ramp_unit) {
+      getMetronomeUtil().savePlayingState();
+      getMetronomeUtil().stop();
+      if (checkedId == R.id.button_options_ramp_unit_bars) {
+        getMetronomeUtil().setRampUnit(UNIT.BARS);
+      } else if (checkedId == R.id.button_options_ramp_unit_seconds) {
+        getMetronomeUtil().setRampUnit(UNIT.SECONDS);
+      } else if (checkedId == R.id.button_options_ramp_unit_minutes) {
+        getMetronomeUtil().setRampUnit(UNIT.MINUTES);
+      }
+      getMetronomeUtil().restorePlayingState();
+      updateRamp();
+    } else if (groupId == R.id.toggle_options_ramp_curve) {
+      getMetronomeUtil().savePlayingState();
+      getMetronomeUtil().stop();
+      getMetronomeUtil().setRampExponential(checkedId == R.id.button_options_ramp_exponential);
+      getMetronomeUtil().restorePlayingState();
+      updateRamp();
+    } else if (groupId == R.id.toggle_options_mute_visuals) {
+      getMetronomeUtil().setMuteHide(checkedId == R.id.button_options_mute_visuals_hide);
+      updateMute();
     } else if (groupId == R.id.toggle_options_timer_unit) {
       if (checkedId == R.id.button_options_timer_unit_bars) {
         getMetronomeUtil().setTimerUnit(UNIT.BARS);
@@ -350,6 +637,39 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
       updateSwing();
       fragment.updateSubs(getMetronomeUtil().getSubdivisions());
       fragment.updateSubControls(true);
+    } else if (groupId == R.id.toggle_options_polyrhythm) {
+      if (checkedId == R.id.button_options_polyrhythm_3_2) {
+        getMetronomeUtil().setPolyrhythm(3, 2);
+      } else if (checkedId == R.id.button_options_polyrhythm_4_3) {
+        getMetronomeUtil().setPolyrhythm(4, 3);
+      } else if (checkedId == R.id.button_options_polyrhythm_5_4) {
+        getMetronomeUtil().setPolyrhythm(5, 4);
+      } else {
+        getMetronomeUtil().clearPolyrhythm();
+      }
+      updatePolyrhythm();
+      updateGroups();
+      fragment.updateBeats(getMetronomeUtil().getBeats());
+      fragment.updateBeatControls(true);
+      fragment.updateVoices();
+      fragment.updateTimerDisplay();
+    } else if (groupId == R.id.toggle_options_groups) {
+      if (checkedId == R.id.button_options_groups_2_3) {
+        getMetronomeUtil().setGroups(2, 3);
+      } else if (checkedId == R.id.button_options_groups_2_2_3) {
+        getMetronomeUtil().setGroups(2, 2, 3);
+      } else if (checkedId == R.id.button_options_groups_3_2_2) {
+        getMetronomeUtil().setGroups(3, 2, 2);
+      } else if (checkedId == R.id.button_options_groups_3_3_2) {
+        getMetronomeUtil().setGroups(3, 3, 2);
+      } else {
+        getMetronomeUtil().clearGroups();
+      }
+      updateGroups();
+      updatePolyrhythm();
+      fragment.updateBeats(getMetronomeUtil().getBeats());
+      fragment.updateBeatControls(true);
+      fragment.updateTimerDisplay();
     }
   }
 
@@ -371,11 +691,35 @@ public class OptionsUtil implements OnButtonCheckedListener, OnChangeListener,
       activity.performHapticSegmentTick(slider, true);
       getMetronomeUtil().setIncrementalInterval((int) value);
       updateIncremental();
+    } else if (id == R.id.slider_options_ramp_duration) {
+      activity.performHapticSegmentTick(slider, true);
+      getMetronomeUtil().setRampDuration((int) value);
+      updateRamp();
+    } else if (id == R.id.slider_options_ramp_tempo) {
+      activity.performHapticSegmentTick(slider, true);
+      getMetronomeUtil().setRampTempo((int) value);
+      updateRamp();
     } else if (id == R.id.slider_options_timer_duration) {
       activity.performHapticSegmentTick(slider, true);
       getMetronomeUtil().setTimerDuration((int) value);
       updateTimer();
       fragment.updateTimerControls();
+    } else if (id == R.id.slider_options_mute_mute) {
+      activity.performHapticSegmentTick(slider, true);
+      getMetronomeUtil().setMuteMute((int) value);
+      updateMute();
+    } else if (id == R.id.slider_options_mute_play) {
+      activity.performHapticSegmentTick(slider, true);
+      getMetronomeUtil().setMutePlay((int) value);
+      updateMute();
+    } else if (id == R.id.slider_options_mute_random) {
+      activity.performHapticSegmentTick(slider, false);
+      getMetronomeUtil().setMuteRandom((int) value);
+      updateMute();
+    } else if (id == R.id.slider_options_program_bars) {
+      activity.performHapticSegmentTick(slider, false);
+      getMetronomeUtil().setProgramBars((int) value);
+      updateProgram();
     }
   }
 
@@ -42,6 +42,8 @@ public class PrefsUtil {
 
   public PrefsUtil checkForMigrations() {
     migrateBookmarks();
+    migrateTempo();
+    migrateLatency();
     return this;
   }
 
@@ -78,6 +80,23 @@ public class PrefsUtil {
     }
   }
 
+  private void migrateTempo() {
+    // tempo was stored as integer before decimal tempos were supported
+    Object tempo = sharedPrefs.getAll().get(PREF.TEMPO);
+    if (tempo instanceof Integer) {
+      sharedPrefs.edit().putFloat(PREF.TEMPO, (Integer) tempo).apply();
+    } else if (tempo != null && !(tempo instanceof Float)) {
+      sharedPrefs.edit().remove(PREF.TEMPO).apply();
+    }
+  }
+
+  private void migrateLatency() {
+    // the old offset replaced the output latency, which is now measured using timestamps
+    if (sharedPrefs.contains(PREF.LATENCY_OFFSET)) {
+      sharedPrefs.edit().remove(PREF.LATENCY_OFFSET).apply();
+    }
+  }
+
   private void migrateString(String keyOld, String keyNew, String def) {
     if (sharedPrefs.contains(keyOld) && !sharedPrefs.contains(keyNew)) {
       SharedPreferences.Editor editor = sharedPrefs.edit();
@@ -0,0 +1,320 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.util.Arrays;
+import xyz.zedler.patrick.tack.Constants;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE_ID;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.TickTable;
+
+public class RenderUtil {
+
+  private static final String TAG = RenderUtil.class.getSimpleName();
+  private static final boolean DEBUG = false;
+
+  // longer bars (very slow tempos with many beats) are streamed tick by tick instead
+  private static final int MAX_BAR_SECONDS = 10;
+  // velocities are quantized to this many pre-scaled copies of each sound
+  private static final int VELOCITY_LEVELS = 8;
+
+  // loaded sounds are kept to apply a changed gain again, set 0 is the selected sound
+  private float[][][] sources = new float[1][3][];
+  // processed sounds of all sets, replaced as a whole so the audio thread reads consistent ones
+  private volatile SoundSets soundSets;
+  // switched by programs without processing on the audio thread
+  private volatile int soundSet;
+  // plain sums of the bar's sounds, the bar is limited once from them
+  private float[] barSums = new float[0];
+  private float[] bar = new float[0];
+  private int[] tickOffsets = new int[0];
+  private int tickCount, barFrames, renderedSize, gain;
+  private double barFraction, barRemainder;
+  private boolean muted;
+  private volatile boolean valid;
+  // cache key of the rendered bar
+  private SoundSets renderedSoundSets;
+  private int renderedSoundSet;
+  private TickTable table;
+  private int[][] voices;
+  private float tempo;
+
+  public synchronized void setTickSounds(float[] strong, float[] normal, float[] sub) {
+    float[][][] sources = Arrays.copyOf(this.sources, this.sources.length);
+    sources[0] = new float[][]{strong, normal, sub};
+    this.sources = sources;
+    updateTickSounds();
+  }
+
+  public synchronized void setProgramSounds(float[][][] programSources) {
+    // program sets follow the selected sound, set i + 1 belongs to program sound i
+    float[][][] sources = new float[programSources.length + 1][][];
+    sources[0] = this.sources[0];
+    System.arraycopy(programSources, 0, sources, 1, programSources.length);
+    this.sources = sources;
+    updateTickSounds();
+  }
+
+  public void setSoundSet(int soundSet) {
+    this.soundSet = soundSet;
+  }
+
+  public synchronized void setGain(int gain) {
+    if (this.gain != gain) {
+      this.gain = gain;
+      updateTickSounds();
+    }
+  }
+
+  public int getGain() {
+    return gain;
+  }
+
+  private void updateTickSounds() {
+    // gain and velocity are applied once here, playback only copies the processed samples
+    float[][][][] soundSets = new float[sources.length][3][][];
+    int maxSoundSize = 0;
+    for (int set = 0; set < sources.length; set++) {
+      for (int type = 0; type < 3; type++) {
+        float[][] sounds = getVelocitySounds(GainUtil.applyGain(sources[set][type], gain));
+        soundSets[set][type] = sounds;
+        // tails of all sets fit into the carry, switching sets never has to grow it
+        maxSoundSize = Math.max(maxSoundSize, getLength(sounds[VELOCITY_LEVELS]));
+      }
+    }
+    this.soundSets = new SoundSets(soundSets, maxSoundSize);
+  }
+
+  private static float[][] getVelocitySounds(@Nullable float[] source) {
+    float[][] sounds = new float[VELOCITY_LEVELS + 1][];
+    if (source == null) {
+      return sounds;
+    }
+    for (int level = 1; level < VELOCITY_LEVELS; level++) {
+      // squared curve as used for the velocity response of most synthesizers
+      float factor = (float) level / VELOCITY_LEVELS;
+      sounds[level] = GainUtil.scale(source, factor * factor);
+    }
+    sounds[VELOCITY_LEVELS] = source;
+    return sounds;
+  }
+
+  public static int getVelocityLevel(int velocity) {
+    // rounded up, only a velocity of 0 is silent
+    int level = (velocity * VELOCITY_LEVELS + Constants.VELOCITY_MAX - 1) / Constants.VELOCITY_MAX;
+    return Math.max(0, Math.min(level, VELOCITY_LEVELS));
+  }
+
+  public void setMuted(boolean muted) {
+    if (this.muted != muted) {
+      this.muted = muted;
+      valid = false;
+    }
+  }
+
+  public void reset() {
+    barRemainder = 0;
+  }
+
+  @Nullable
+  public float[] getTickSound(int tickType, int velocity) {
+    return getTickSound(soundSets, soundSet, tickType, velocity);
+  }
+
+  @Nullable
+  private float[] getTickSound(
+      @Nullable SoundSets soundSets, int soundSet, int tickType, int velocity
+  ) {
+    if (muted || soundSets == null) {
+      return null;
+    }
+    float[][][] sounds = soundSets.get(soundSet);
+    int level = getVelocityLevel(velocity);
+    switch (tickType) {
+      case TICK_TYPE_ID.STRONG:
+        return sounds[0][level];
+      case TICK_TYPE_ID.SUB:
+        return sounds[2][level];
+      case TICK_TYPE_ID.MUTED:
+        return null;
+      default:
+        return sounds[1][level];
+    }
+  }
+
+  @Nullable
+  public float[] getRenderedTickSound(int tickType, int velocity) {
+    // a newer sound set may already be published, this is the one in the cached bar
+    return getTickSound(renderedSoundSets, renderedSoundSet, tickType, velocity);
+  }
+
+  public boolean isBarCacheable(float tempo, TickTable table) {
+    return 60.0 / tempo * table.barUnits / table.unitsPerBeat < MAX_BAR_SECONDS;
+  }
+
+  public boolean isBarValid(float tempo, TickTable table, int[][] voices) {
+    // tables are replaced whenever the pattern changes
+    return valid
+        && renderedSoundSets == soundSets
+        && renderedSoundSet == soundSet
+        && this.tempo == tempo
+        && this.table == table
+        && Arrays.deepEquals(this.voices, voices);
+  }
+
+  public void renderBar(float tempo, TickTable table, int[][] voices) {
+    // copies as the voice arrays are modified in place
+    this.voices = new int[voices.length][];
+    for (int i = 0; i < voices.length; i++) {
+      this.voices[i] = Arrays.copyOf(voices[i], voices[i].length);
+    }
+    this.table = table;
+    this.tempo = tempo;
+    // read once, sounds replaced while rendering are picked up with the next bar
+    SoundSets soundSets = this.soundSets;
+    int soundSet = this.soundSet;
+    renderedSoundSets = soundSets;
+    renderedSoundSet = soundSet;
+    int maxSoundSize = soundSets != null ? soundSets.maxSoundSize : 0;
+
+    tickCount = table.size;
+    double unitSize = 60.0 * AudioUtil.getSampleRate() / tempo / table.unitsPerBeat;
+    barFrames = (int) (unitSize * table.barUnits);
+    barFraction = unitSize * table.barUnits - barFrames;
+    if (tickOffsets.length < tickCount + 1) {
+      tickOffsets = new int[tickCount + 1];
+    }
+    for (int i = 0; i < tickCount; i++) {
+      tickOffsets[i] = (int) (table.starts[i] * unitSize);
+    }
+    tickOffsets[tickCount] = barFrames;
+    int lastOffset = tickOffsets[tickCount - 1];
+    for (int[] voice : voices) {
+      lastOffset = Math.max(lastOffset, getPulseOffset(voice.length - 1, voice.length));
+    }
+    // one extra frame for bars which receive the carried remainder, followed by the tails
+    renderedSize = Math.max(barFrames + 1, lastOffset + maxSoundSize);
+    if (bar.length < renderedSize) {
+      bar = new float[renderedSize];
+      barSums = new float[renderedSize];
+    } else {
+      Arrays.fill(barSums, 0, renderedSize, 0);
+    }
+
+    for (int i = 0; i < tickCount; i++) {
+      float[] tickSound = getTickSound(
+          soundSets, soundSet, table.types[i], table.velocities[i]
+      );
+      if (tickSound == null) {
+        continue;
+      }
+      // sounds longer than their period overlap with the following ones
+      int offset = tickOffsets[i];
+      for (int j = 0; j < tickSound.length; j++) {
+        barSums[offset + j] += tickSound[j];
+      }
+    }
+    for (int[] voice : voices) {
+      // pulses of polyrhythm voices are spread evenly over the same bar
+      for (int i = 0; i < voice.length; i++) {
+        float[] tickSound = getTickSound(soundSets, soundSet, voice[i], Constants.VELOCITY_MAX);
+        if (tickSound == null) {
+          continue;
+        }
+        int offset = getPulseOffset(i, voice.length);
+        for (int j = 0; j < tickSound.length; j++) {
+          barSums[offset + j] += tickSound[j];
+        }
+      }
+    }
+    // limited only once, carried and muted sounds are mixed with the sums instead
+    for (int i = 0; i < renderedSize; i++) {
+      bar[i] = GainUtil.limit(barSums[i]);
+    }
+    valid = true;
+    if (DEBUG) {
+      Log.v(TAG, "renderBar: rendered " + barFrames + " frames for " + tickCount + " ticks");
+    }
+  }
+
+  public int getPulseOffset(int pulse, int pulseCount) {
+    return (int) ((double) barFrames * pulse / pulseCount);
+  }
+
+  public float[] getBar() {
+    return bar;
+  }
+
+  public float[] getBarSums() {
+    return barSums;
+  }
+
+  public int getRenderedSize() {
+    return renderedSize;
+  }
+
+  public int getMaxSoundSize() {
+    SoundSets soundSets = this.soundSets;
+    return soundSets != null ? soundSets.maxSoundSize : 0;
+  }
+
+  public int getTickOffset(int tickInBar) {
+    return tickOffsets[tickInBar];
+  }
+
+  public boolean isLastTick(int tickInBar) {
+    return tickInBar == tickCount - 1;
+  }
+
+  public int getTickPeriodSize(int tickInBar) {
+    int size = tickOffsets[tickInBar + 1] - tickOffsets[tickInBar];
+    if (isLastTick(tickInBar)) {
+      // carry the fractional frame remainder over to the next bar for an exact long-term tempo
+      barRemainder += barFraction;
+      if (barRemainder >= 1) {
+        barRemainder -= 1;
+        size++;
+      }
+    }
+    return size;
+  }
+
+  private static int getLength(@Nullable float[] sound) {
+    return sound != null ? sound.length : 0;
+  }
+
+  private static class SoundSets {
+
+    // indexed by set, tick type and velocity level, never modified after creation
+    final float[][][][] sets;
+    // longest sound of all sets, the rendered bar always has room for its tail
+    final int maxSoundSize;
+
+    SoundSets(float[][][][] sets, int maxSoundSize) {
+      this.sets = sets;
+      this.maxSoundSize = maxSoundSize;
+    }
+
+    float[][][] get(int set) {
+      return sets[set < sets.length ? set : 0];
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+public class ResampleUtil {
+
+  // zero crossings of the windowed sinc on each side, more is sharper but slower
+  private static final int ZERO_CROSSINGS = 13;
+  // filter phases per zero crossing, values in between are interpolated linearly
+  private static final int PHASES = 128;
+  // cutoff relative to the lower nyquist frequency, leaves room for the transition band
+  private static final double CUTOFF = 0.95;
+  private static final double KAISER_BETA = 8;
+  private static final float[] filter = getFilterTable();
+
+  public static float[] resample(float[] source, double ratio) {
+    // ratio is the source step per output sample, above 1 the pitch is raised
+    if (ratio == 1) {
+      return source;
+    }
+    // when decimating, the filter is stretched to remove the frequencies that would alias
+    double cutoff = CUTOFF * Math.min(1, 1 / ratio);
+    double halfWidth = ZERO_CROSSINGS / cutoff;
+    double phaseStep = cutoff * PHASES;
+    float[] data = new float[(int) (source.length / ratio)];
+    for (int j = 0; j < data.length; j++) {
+      double time = j * ratio;
+      int first = Math.max(0, (int) Math.ceil(time - halfWidth));
+      int last = Math.min(source.length - 1, (int) Math.floor(time + halfWidth));
+      double sum = 0;
+      for (int i = first; i <= last; i++) {
+        double phase = Math.abs(time - i) * phaseStep;
+        int index = (int) phase;
+        if (index >= filter.length - 1) {
+          continue;
+        }
+        float coefficient = filter[index];
+        coefficient += (float) (phase - index) * (filter[index + 1] - coefficient);
+        sum += source[i] * coefficient;
+      }
+      data[j] = (float) (sum * cutoff);
+    }
+    return data;
+  }
+
+  private static float[] getFilterTable() {
+    // one side of the symmetric kaiser-windowed sinc, with a trailing zero for interpolation
+    int size = ZERO_CROSSINGS * PHASES;
+    float[] table = new float[size + 2];
+    double besselBeta = getBessel(KAISER_BETA);
+    for (int i = 0; i <= size; i++) {
+      double x = (double) i / PHASES;
+      double sinc = i == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+      double position = (double) i / size;
+      double window = getBessel(KAISER_BETA * Math.sqrt(1 - position * position)) / besselBeta;
+      table[i] = (float) (sinc * window);
+    }
+    return table;
+  }
+
+  private static double getBessel(double x) {
+    // zeroth order modified bessel function of the first kind, power series
+    double sum = 1, term = 1;
+    for (int k = 1; k < 32; k++) {
+      term *= (x / (2 * k)) * (x / (2 * k));
+      sum += term;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RawRes;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SampleUtil {
+
+  private static final String TAG = SampleUtil.class.getSimpleName();
+  private static final boolean DEBUG = false;
+
+  // number of cached samples, the built-in sound sets together need a fraction of it
+  private static final int MAX_CACHE_SIZE = AudioUtil.DEFAULT_SAMPLE_RATE * 20;
+  private static final String SOURCE_RESOURCE = "res:";
+  private static final String SOURCE_FILE = "file:";
+
+  // shared by all instances in the process, access order makes the iteration LRU first
+  private static final Map<String, float[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private static int cacheSize;
+
+  public static void loadSamplesAsync(
+      @NonNull Context context, String[] sources, double[] ratios, @NonNull SamplesListener listener
+  ) {
+    float[][] samples = getCachedSamples(sources, ratios);
+    if (samples != null) {
+      listener.onSamplesLoaded(samples);
+      return;
+    }
+    Context appContext = context.getApplicationContext();
+    executor.execute(() -> {
+      float[][] loaded = new float[sources.length][];
+      try {
+        for (int i = 0; i < sources.length; i++) {
+          loaded[i] = getSample(appContext, sources[i], ratios[i]);
+        }
+      } catch (RuntimeException e) {
+        Log.e(TAG, "loadSamplesAsync: failed to load samples: ", e);
+        listener.onSamplesFailed();
+        return;
+      }
+      listener.onSamplesLoaded(loaded);
+    });
+  }
+
+  public static String getResourceSource(@RawRes int resId) {
+    return SOURCE_RESOURCE + resId;
+  }
+
+  public static String getFileSource(@NonNull File file, int sampleRate) {
+    return SOURCE_FILE + sampleRate + ":" + file.getAbsolutePath();
+  }
+
+  public static synchronized void invalidate(String source) {
+    Iterator<Map.Entry<String, float[]>> iterator = cache.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, float[]> entry = iterator.next();
+      if (entry.getKey().startsWith(source + "_")) {
+        cacheSize -= entry.getValue().length;
+        iterator.remove();
+      }
+    }
+  }
+
+  @Nullable
+  private static synchronized float[][] getCachedSamples(String[] sources, double[] ratios) {
+    float[][] samples = new float[sources.length][];
+    for (int i = 0; i < sources.length; i++) {
+      samples[i] = cache.get(getKey(sources[i], ratios[i]));
+      if (samples[i] == null) {
+        return null;
+      }
+    }
+    return samples;
+  }
+
+  private static float[] getSample(Context context, String source, double ratio) {
+    String key = getKey(source, ratio);
+    synchronized (SampleUtil.class) {
+      float[] cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    float[] sample;
+    if (ratio != Pitch.NORMAL.ratio) {
+      // pitch variants are resampled from the cached original instead of decoding again
+      sample = ResampleUtil.resample(getSample(context, source, Pitch.NORMAL.ratio), ratio);
+    } else if (source.startsWith(SOURCE_FILE)) {
+      String fileSource = source.substring(SOURCE_FILE.length());
+      int separator = fileSource.indexOf(':');
+      sample = loadFile(
+          new File(fileSource.substring(separator + 1)),
+          Integer.parseInt(fileSource.substring(0, separator))
+      );
+    } else {
+      sample = loadAudio(context, Integer.parseInt(source.substring(SOURCE_RESOURCE.length())));
+    }
+    synchronized (SampleUtil.class) {
+      float[] previous = cache.put(key, sample);
+      if (previous != null) {
+        cacheSize -= previous.length;
+      }
+      cacheSize += sample.length;
+      trimCache();
+    }
+    if (DEBUG) {
+      Log.v(TAG, "getSample: loaded " + key + " with " + sample.length + " samples");
+    }
+    return sample;
+  }
+
+  private static void trimCache() {
+    Iterator<Map.Entry<String, float[]>> iterator = cache.entrySet().iterator();
+    // the most recently used entry is the sample which is being loaded
+    while (cacheSize > MAX_CACHE_SIZE && cache.size() > 1 && iterator.hasNext()) {
+      cacheSize -= iterator.next().getValue().length;
+      iterator.remove();
+    }
+  }
+
+  private static String getKey(String source, double ratio) {
+    return source + "_" + ratio;
+  }
+
+  private static float[] loadFile(File file, int sampleRate) {
+    // imported sounds are stored as raw samples, usually at the output rate
+    try (FileInputStream stream = new FileInputStream(file)) {
+      FileChannel channel = stream.getChannel();
+      FloatBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN)
+          .asFloatBuffer();
+      float[] data = new float[buffer.remaining()];
+      buffer.get(data);
+      return ResampleUtil.resample(data, (double) sampleRate / AudioUtil.getSampleRate());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static float[] loadAudio(Context context, @RawRes int resId) {
+    AssetFileDescriptor descriptor;
+    try {
+      descriptor = context.getResources().openRawResourceFd(resId);
+    } catch (Resources.NotFoundException e) {
+      // only uncompressed resources can be mapped
+      return loadAudioFromStream(context, resId);
+    }
+    try (AssetFileDescriptor fd = descriptor; FileInputStream stream = fd.createInputStream()) {
+      // mapped pages are converted directly into the sample array
+      ByteBuffer buffer = stream.getChannel().map(
+          MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()
+      );
+      return WavUtil.readWav(buffer, AudioUtil.getSampleRate());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static float[] loadAudioFromStream(Context context, @RawRes int resId) {
+    try (InputStream stream = context.getResources().openRawResource(resId)) {
+      byte[] content;
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+        content = stream.readAllBytes();
+      } else {
+        content = readInputStreamToBytes(stream);
+      }
+      return WavUtil.readWav(ByteBuffer.wrap(content), AudioUtil.getSampleRate());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static byte[] readInputStreamToBytes(InputStream input) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    int read;
+    byte[] data = new byte[4096];
+    while ((read = input.read(data, 0, data.length)) != -1) {
+      buffer.write(data, 0, read);
+    }
+    return buffer.toByteArray();
+  }
+
+  public enum Pitch {
+    NORMAL(1), HIGH(2), LOW(0.5);
+
+    // playback speed of the original sample, an octave up or down for the presets
+    public final double ratio;
+
+    Pitch(double ratio) {
+      this.ratio = ratio;
+    }
+  }
+
+  public interface SamplesListener {
+    void onSamplesLoaded(float[][] samples);
+    void onSamplesFailed();
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import xyz.zedler.patrick.tack.Constants.DEF;
+import xyz.zedler.patrick.tack.Constants.SOUND;
+import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
+import xyz.zedler.patrick.tack.R;
+import xyz.zedler.patrick.tack.util.SampleUtil.Pitch;
+import xyz.zedler.patrick.tack.util.SampleUtil.SamplesListener;
+
+public class SoundUtil {
+
+  private static final String TAG = SoundUtil.class.getSimpleName();
+
+  private final Context context;
+  private final RenderUtil renderUtil;
+  private final Object soundLock = new Object();
+  private int soundRequest, soundLoaded, programRequest, programLoaded;
+  private boolean soundFailed, programFailed;
+  private String sound;
+  private String[] programSounds = new String[0];
+  // synthesizer parameters for strong, normal and sub ticks
+  private String synthWaveform = DEF.SYNTH_WAVEFORM;
+  private final int[] synthFrequencies = new int[]{
+      DEF.SYNTH_FREQUENCY_STRONG, DEF.SYNTH_FREQUENCY_NORMAL, DEF.SYNTH_FREQUENCY_SUB
+  };
+  private final int[] synthDecays = new int[]{
+      DEF.SYNTH_DECAY, DEF.SYNTH_DECAY, DEF.SYNTH_DECAY
+  };
+
+  public SoundUtil(@NonNull Context context, @NonNull RenderUtil renderUtil) {
+    this.context = context;
+    this.renderUtil = renderUtil;
+  }
+
+  public void setSound(String sound) {
+    String[] sources = getSoundSources(sound);
+    if (sources == null) {
+      // generated without loading any asset
+      this.sound = SOUND.SINE;
+      updateSynthSounds();
+      return;
+    }
+    this.sound = sound;
+    int request;
+    synchronized (soundLock) {
+      request = ++soundRequest;
+    }
+    SampleUtil.loadSamplesAsync(
+        context,
+        sources,
+        getSoundPitches(sound),
+        new SamplesListener() {
+          @Override
+          public void onSamplesLoaded(float[][] samples) {
+            synchronized (soundLock) {
+              // a newer sound selection may have finished loading first
+              if (request != soundRequest) {
+                return;
+              }
+              renderUtil.setTickSounds(samples[0], samples[1], samples[2]);
+              soundLoaded = request;
+              soundFailed = false;
+              soundLock.notifyAll();
+            }
+          }
+
+          @Override
+          public void onSamplesFailed() {
+            // the previous sounds are kept, but nothing waits for this request anymore
+            synchronized (soundLock) {
+              if (request == soundRequest) {
+                soundLoaded = request;
+                soundFailed = true;
+                soundLock.notifyAll();
+              }
+            }
+          }
+        }
+    );
+  }
+
+  public void setProgramSounds(String[] sounds) {
+    programSounds = sounds;
+    int request;
+    synchronized (soundLock) {
+      request = ++programRequest;
+    }
+    // all samples of the program are loaded at once, synthesized sets are filled in directly
+    float[][][] soundSets = new float[sounds.length][][];
+    List<String> sources = new ArrayList<>();
+    List<Double> pitches = new ArrayList<>();
+    for (int i = 0; i < sounds.length; i++) {
+      String[] soundSources = getSoundSources(sounds[i]);
+      if (soundSources == null) {
+        soundSets[i] = getSynthSounds();
+        continue;
+      }
+      Collections.addAll(sources, soundSources);
+      for (double pitch : getSoundPitches(sounds[i])) {
+        pitches.add(pitch);
+      }
+    }
+    double[] ratios = new double[pitches.size()];
+    for (int i = 0; i < ratios.length; i++) {
+      ratios[i] = pitches.get(i);
+    }
+    SampleUtil.loadSamplesAsync(
+        context,
+        sources.toArray(new String[0]),
+        ratios,
+        new SamplesListener() {
+          @Override
+          public void onSamplesLoaded(float[][] samples) {
+            for (int i = 0, sample = 0; i < soundSets.length; i++) {
+              if (soundSets[i] == null) {
+                soundSets[i] = new float[][]{
+                    samples[sample], samples[sample + 1], samples[sample + 2]
+                };
+                sample += 3;
+              }
+            }
+            synchronized (soundLock) {
+              if (request != programRequest) {
+                return;
+              }
+              renderUtil.setProgramSounds(soundSets);
+              programLoaded = request;
+              programFailed = false;
+              soundLock.notifyAll();
+            }
+          }
+
+          @Override
+          public void onSamplesFailed() {
+            // sections without their sounds fall back to the selected sound
+            synchronized (soundLock) {
+              if (request == programRequest) {
+                renderUtil.setProgramSounds(new float[0][][]);
+                programLoaded = request;
+                programFailed = true;
+                soundLock.notifyAll();
+              }
+            }
+          }
+        }
+    );
+  }
+
+  @Nullable
+  private String[] getSoundSources(String sound) {
+    int resIdNormal, resIdStrong, resIdSub;
+    switch (sound) {
+      case SOUND.WOOD:
+        resIdNormal = R.raw.wood;
+        resIdStrong = R.raw.wood;
+        resIdSub = R.raw.wood;
+        break;
+      case SOUND.MECHANICAL:
+        resIdNormal = R.raw.mechanical_tick;
+        resIdStrong = R.raw.mechanical_ding;
+        resIdSub = R.raw.mechanical_knock;
+        break;
+      case SOUND.BEATBOXING_1:
+        resIdNormal = R.raw.beatbox_snare1;
+        resIdStrong = R.raw.beatbox_kick1;
+        resIdSub = R.raw.beatbox_hihat1;
+        break;
+      case SOUND.BEATBOXING_2:
+        resIdNormal = R.raw.beatbox_snare2;
+        resIdStrong = R.raw.beatbox_kick2;
+        resIdSub = R.raw.beatbox_hihat2;
+        break;
+      case SOUND.HANDS:
+        resIdNormal = R.raw.hands_hit;
+        resIdStrong = R.raw.hands_clap;
+        resIdSub = R.raw.hands_snap;
+        break;
+      case SOUND.FOLDING:
+        resIdNormal = R.raw.folding_knock;
+        resIdStrong = R.raw.folding_fold;
+        resIdSub = R.raw.folding_tap;
+        break;
+      case SOUND.CUSTOM:
+        // imported sound, the synthesizer is used if it was removed
+        String customSource = ImportUtil.getCustomSoundSource(context);
+        return customSource != null
+            ? new String[]{customSource, customSource, customSource}
+            : null;
+      default:
+        return null;
+    }
+    return new String[]{
+        SampleUtil.getResourceSource(resIdStrong),
+        SampleUtil.getResourceSource(resIdNormal),
+        SampleUtil.getResourceSource(resIdSub)
+    };
+  }
+
+  private static double[] getSoundPitches(String sound) {
+    switch (sound) {
+      case SOUND.WOOD:
+      case SOUND.CUSTOM:
+        // single sample sounds are pitched for strong and sub ticks
+        return new double[]{Pitch.HIGH.ratio, Pitch.NORMAL.ratio, Pitch.LOW.ratio};
+      default:
+        return new double[]{Pitch.NORMAL.ratio, Pitch.NORMAL.ratio, Pitch.NORMAL.ratio};
+    }
+  }
+
+  public void setSynthWaveform(String waveform) {
+    synthWaveform = waveform;
+    onSynthChanged();
+  }
+
+  public void setSynthFrequency(String tickType, int frequency) {
+    synthFrequencies[getSynthIndex(tickType)] = frequency;
+    onSynthChanged();
+  }
+
+  public void setSynthDecay(String tickType, int decay) {
+    synthDecays[getSynthIndex(tickType)] = decay;
+    onSynthChanged();
+  }
+
+  private void onSynthChanged() {
+    if (SOUND.SINE.equals(sound)) {
+      updateSynthSounds();
+    }
+    if (Arrays.asList(programSounds).contains(SOUND.SINE)) {
+      setProgramSounds(programSounds);
+    }
+  }
+
+  private static int getSynthIndex(String tickType) {
+    switch (tickType) {
+      case TICK_TYPE.STRONG:
+        return 0;
+      case TICK_TYPE.SUB:
+        return 2;
+      default:
+        return 1;
+    }
+  }
+
+  private void updateSynthSounds() {
+    float[][] samples = getSynthSounds();
+    synchronized (soundLock) {
+      // replaces sounds of a previous selection which may still be loading
+      soundRequest++;
+      renderUtil.setTickSounds(samples[0], samples[1], samples[2]);
+      soundLoaded = soundRequest;
+      soundFailed = false;
+      soundLock.notifyAll();
+    }
+  }
+
+  private float[][] getSynthSounds() {
+    float[][] samples = new float[3][];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = SynthUtil.synthesize(
+          synthWaveform, synthFrequencies[i], synthDecays[i], AudioUtil.getSampleRate()
+      );
+    }
+    return samples;
+  }
+
+  public boolean awaitSounds(long timeout) {
+    // whether the selected sounds are loaded, not just the previous ones kept after a failure
+    synchronized (soundLock) {
+      long deadline = SystemClock.uptimeMillis() + timeout;
+      long remaining = timeout;
+      while ((soundLoaded != soundRequest || programLoaded != programRequest) && remaining > 0) {
+        try {
+          soundLock.wait(remaining);
+        } catch (InterruptedException e) {
+          Log.e(TAG, "awaitSounds: interrupted while waiting for sounds: ", e);
+          return false;
+        }
+        remaining = deadline - SystemClock.uptimeMillis();
+      }
+      return soundLoaded == soundRequest && programLoaded == programRequest
+          && !soundFailed && !programFailed;
+    }
+  }
+}
@@ -0,0 +1,364 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Arrays;
+import xyz.zedler.patrick.tack.Constants;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.Tick;
+import xyz.zedler.patrick.tack.util.MetronomeUtil.TickTable;
+
+public class StreamUtil {
+
+  private static final String TAG = StreamUtil.class.getSimpleName();
+  private static final boolean DEBUG = false;
+
+  private static final int SILENCE_CHUNK_SIZE = 8000;
+
+  private final RenderUtil renderUtil;
+  private final Output output;
+  // cached bar data is collected into writes of at least this size
+  private final int minWriteSize;
+  private float[] outputData;
+  private int pendingOffset, pendingSize;
+  private int outputMixOffset, outputMixSize, outputOffset, outputSize, outputSilence;
+  // tails of sounds longer than their period, ring buffer starting at the next period
+  private float[] carry = new float[0];
+  private int carryStart, carrySize;
+  // whether the previous period was queued from the cached bar instead of written by itself
+  private boolean barQueued;
+  // periods mixed with a carried tail, written before the pending bar data
+  private float[] mixData = new float[0];
+  private int mixSize;
+  private long writtenFrames;
+  private double periodRemainder;
+  // tempo of the previous period
+  private float lastTempo;
+  // each period is written as soon as the previous one instead of collecting them
+  private boolean immediate;
+  private final float[] silence = new float[SILENCE_CHUNK_SIZE];
+
+  public StreamUtil(@NonNull RenderUtil renderUtil, int minWriteSize, @NonNull Output output) {
+    this.renderUtil = renderUtil;
+    this.minWriteSize = minWriteSize;
+    this.output = output;
+  }
+
+  public void reset(boolean immediate) {
+    this.immediate = immediate;
+    writtenFrames = 0;
+    periodRemainder = 0;
+    lastTempo = 0;
+    pendingSize = 0;
+    outputMixSize = 0;
+    outputSize = 0;
+    outputSilence = 0;
+    clearCarry();
+    barQueued = false;
+    mixSize = 0;
+    ensureCarryCapacity(renderUtil.getMaxSoundSize());
+    ensureMixCapacity(minWriteSize + renderUtil.getMaxSoundSize());
+    renderUtil.reset();
+  }
+
+  public void tick(Tick tick, float tempo, TickTable table, int tickInBar, int[][] voices) {
+    // ramps change the tempo with every period, rendering whole bars would be wasted then
+    boolean isTempoSteady = tempo == lastTempo;
+    lastTempo = tempo;
+    // written ticks of this bar carry their own tails, the cache is entered at the next bar
+    boolean cacheable = isTempoSteady && renderUtil.isBarCacheable(tempo, table)
+        && (tickInBar == 0 || barQueued);
+    if (cacheable) {
+      if (!renderUtil.isBarValid(tempo, table, voices)) {
+        writePendingData();
+        renderUtil.renderBar(tempo, table, voices);
+      }
+      if (tick.muted) {
+        // muted periods keep the bar's tails of earlier ticks and its exact period lengths
+        cancelBarPeriod(tick, table, tickInBar, voices);
+      }
+      queueBarPeriod(tickInBar);
+    } else {
+      writePendingData();
+      writeTickPeriod(tick, tempo, table, tickInBar, voices);
+    }
+  }
+
+  private void queueBarPeriod(int tickInBar) {
+    barQueued = true;
+    float[] bar = renderUtil.getBar();
+    float[] barSums = renderUtil.getBarSums();
+    int offset = renderUtil.getTickOffset(tickInBar);
+    int periodSize = renderUtil.getTickPeriodSize(tickInBar);
+    writtenFrames += periodSize;
+    if (pendingSize > 0 && (carrySize > 0 || pendingOffset + pendingSize != offset)) {
+      // mixed frames are written before pending bar data, so that has to be written first
+      writePendingData();
+    }
+    // the limiter is applied once to the sums of the bar and the carry
+    int mixed = mixCarry(barSums, offset, periodSize, periodSize);
+    if (renderUtil.isLastTick(tickInBar)) {
+      // tails of the bar's sounds continue in the following bar
+      int end = offset + periodSize;
+      addCarry(barSums, end, renderUtil.getRenderedSize() - end, 0);
+    }
+    if (immediate) {
+      // non-blocking writes are cheap, each period is written as soon as the previous one is
+      setOutput(bar, offset + mixed, periodSize - mixed, 0);
+      return;
+    }
+    if (mixed < periodSize) {
+      if (pendingSize == 0) {
+        pendingOffset = offset + mixed;
+      }
+      pendingSize += periodSize - mixed;
+    }
+    if (mixSize + pendingSize >= minWriteSize || renderUtil.isLastTick(tickInBar)) {
+      writePendingData();
+    }
+  }
+
+  private void cancelBarPeriod(Tick tick, TickTable table, int tickInBar, int[][] voices) {
+    // sounds of this period are part of the cached bar, subtracting them through the carry
+    // removes them from the period and their tails from the following ones, exactly as the
+    // carry is mixed with the unlimited sums of the bar
+    subtractCarry(renderUtil.getRenderedTickSound(tick.type, tick.velocity), 0);
+    int tickOffset = renderUtil.getTickOffset(tickInBar);
+    int start = table.starts[tickInBar];
+    int length = table.lengths[tickInBar];
+    int barUnits = table.barUnits;
+    for (int[] voice : voices) {
+      int pulseCount = voice.length;
+      int first = (start * pulseCount + barUnits - 1) / barUnits;
+      for (int pulse = first; pulse * barUnits < (start + length) * pulseCount; pulse++) {
+        subtractCarry(
+            renderUtil.getRenderedTickSound(voice[pulse], Constants.VELOCITY_MAX),
+            renderUtil.getPulseOffset(pulse, pulseCount) - tickOffset
+        );
+      }
+    }
+  }
+
+  private void writePendingData() {
+    if (mixSize == 0 && pendingSize == 0) {
+      return;
+    }
+    if (DEBUG) {
+      Log.v(TAG, "writePendingData: writing " + mixSize + " mixed and "
+          + pendingSize + " frames of cached bar");
+    }
+    setOutput(renderUtil.getBar(), pendingOffset, pendingSize, 0);
+    pendingSize = 0;
+  }
+
+  private void writeTickPeriod(
+      Tick tick, float tempo, TickTable table, int tickInBar, int[][] voices
+  ) {
+    barQueued = false;
+    float[] tickSound = tick.muted ? null : renderUtil.getTickSound(tick.type, tick.velocity);
+    int periodSize = getPeriodSize(tempo, table.lengths[tickInBar], table.unitsPerBeat);
+    int soundLength = tickSound != null ? tickSound.length : 0;
+    int soundSize = Math.min(soundLength, periodSize);
+    writtenFrames += periodSize;
+    if (!tick.muted) {
+      addVoicePulses(voices, table, tickInBar, periodSize);
+    }
+    int mixed = mixCarry(tickSound, 0, soundSize, periodSize);
+    if (soundLength > periodSize) {
+      addCarry(tickSound, periodSize, soundLength - periodSize, 0);
+    }
+    setOutput(
+        tickSound,
+        Math.min(mixed, soundSize),
+        Math.max(0, soundSize - mixed),
+        periodSize - Math.max(mixed, soundSize)
+    );
+    if (DEBUG) {
+      Log.v(TAG, "writeTickPeriod: wrote tick period for " + tick);
+    }
+  }
+
+  private void addVoicePulses(int[][] voices, TickTable table, int tickInBar, int periodSize) {
+    // pulses of polyrhythm voices within this period, added to its carry before it is mixed
+    int start = table.starts[tickInBar];
+    int length = table.lengths[tickInBar];
+    int barUnits = table.barUnits;
+    for (int[] voice : voices) {
+      int pulseCount = voice.length;
+      int first = (start * pulseCount + barUnits - 1) / barUnits;
+      for (int pulse = first; pulse * barUnits < (start + length) * pulseCount; pulse++) {
+        float[] pulseSound = renderUtil.getTickSound(voice[pulse], Constants.VELOCITY_MAX);
+        if (pulseSound == null) {
+          continue;
+        }
+        // position within the period as a fraction of it, clamped against rounding
+        double position = (double) (pulse * barUnits - start * pulseCount)
+            / (pulseCount * length);
+        int offset = Math.min((int) (position * periodSize), periodSize - 1);
+        addCarry(pulseSound, 0, pulseSound.length, offset);
+      }
+    }
+  }
+
+  private int mixCarry(float[] data, int offset, int size, int periodSize) {
+    // sums the start of the period with carried tails, silence after the data size
+    int mixed = Math.min(carrySize, periodSize);
+    if (mixed == 0) {
+      return 0;
+    }
+    ensureMixCapacity(mixSize + mixed);
+    int mask = carry.length - 1;
+    for (int i = 0; i < mixed; i++) {
+      int index = (carryStart + i) & mask;
+      float sample = i < size ? data[offset + i] : 0;
+      mixData[mixSize + i] = GainUtil.limit(sample + carry[index]);
+      carry[index] = 0;
+    }
+    carryStart = (carryStart + mixed) & mask;
+    carrySize -= mixed;
+    mixSize += mixed;
+    return mixed;
+  }
+
+  private void addCarry(float[] data, int offset, int size, int position) {
+    // position is relative to the start of the carry, which is the next unmixed period
+    if (size <= 0) {
+      return;
+    }
+    ensureCarryCapacity(position + size);
+    int mask = carry.length - 1;
+    for (int i = 0; i < size; i++) {
+      carry[(carryStart + position + i) & mask] += data[offset + i];
+    }
+    carrySize = Math.max(carrySize, position + size);
+  }
+
+  public boolean writeTails() {
+    // carried tails follow the last period instead of being cut off, repeated until written
+    writePendingData();
+    if (!writeOutput()) {
+      return false;
+    }
+    int size = carrySize;
+    if (size > 0) {
+      writtenFrames += size;
+      mixCarry(null, 0, 0, size);
+      setOutput(null, 0, 0, 0);
+    }
+    return writeOutput();
+  }
+
+  private void clearCarry() {
+    Arrays.fill(carry, 0);
+    carryStart = 0;
+    carrySize = 0;
+  }
+
+  private void subtractCarry(@Nullable float[] data, int position) {
+    if (data == null) {
+      return;
+    }
+    ensureCarryCapacity(position + data.length);
+    int mask = carry.length - 1;
+    for (int i = 0; i < data.length; i++) {
+      carry[(carryStart + position + i) & mask] -= data[i];
+    }
+    carrySize = Math.max(carrySize, position + data.length);
+  }
+
+  private void ensureCarryCapacity(int size) {
+    if (size <= carry.length) {
+      return;
+    }
+    // power of two for cheap wrapping, the carried frames are moved to the start
+    float[] resized = new float[Integer.highestOneBit(Math.max(1, size - 1)) << 1];
+    for (int i = 0; i < carrySize; i++) {
+      resized[i] = carry[(carryStart + i) & (carry.length - 1)];
+    }
+    carry = resized;
+    carryStart = 0;
+  }
+
+  private void ensureMixCapacity(int size) {
+    if (size > mixData.length) {
+      mixData = Arrays.copyOf(mixData, size);
+    }
+  }
+
+  private void setOutput(float[] data, int offset, int size, int silenceSize) {
+    // pending mixed frames are written first
+    outputMixOffset = 0;
+    outputMixSize = mixSize;
+    mixSize = 0;
+    outputData = data;
+    outputOffset = offset;
+    outputSize = size;
+    outputSilence = silenceSize;
+    writeOutput();
+  }
+
+  public boolean writeOutput() {
+    // blocking writes always complete, non-blocking writes continue on the next call
+    while (outputMixSize > 0) {
+      int written = output.write(mixData, outputMixOffset, outputMixSize);
+      if (written <= 0) {
+        return false;
+      }
+      outputMixOffset += written;
+      outputMixSize -= written;
+    }
+    while (outputSize > 0) {
+      int written = output.write(outputData, outputOffset, outputSize);
+      if (written <= 0) {
+        return false;
+      }
+      outputOffset += written;
+      outputSize -= written;
+    }
+    while (outputSilence > 0) {
+      int written = output.write(silence, 0, Math.min(silence.length, outputSilence));
+      if (written <= 0) {
+        return false;
+      }
+      outputSilence -= written;
+    }
+    return true;
+  }
+
+  private int getPeriodSize(float tempo, int length, int unitsPerBeat) {
+    // carry the fractional frame remainder over to the next period for an exact long-term tempo
+    double periodSize = 60.0 * AudioUtil.getSampleRate() / tempo * length / unitsPerBeat
+        + periodRemainder;
+    int size = (int) periodSize;
+    periodRemainder = periodSize - size;
+    return size;
+  }
+
+  public long getWrittenFrames() {
+    return writtenFrames;
+  }
+
+  public interface Output {
+    // frames written, fewer if there is no room without blocking, 0 or less on errors
+    int write(float[] data, int offset, int size);
+  }
+}
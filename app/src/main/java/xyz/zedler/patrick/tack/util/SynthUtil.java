@@ -0,0 +1,162 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import java.util.Random;
+import xyz.zedler.patrick.tack.Constants.WAVEFORM;
+
+public class SynthUtil {
+
+  // envelope of a click, it has no sustain phase and fades out after the decay
+  private static final float ATTACK_MILLIS = 1;
+  private static final float RELEASE_MILLIS = 5;
+  private static final float SUSTAIN_LEVEL = 0;
+  // decay reaches this level relative to the peak at its end
+  private static final float DECAY_FLOOR = 0.01f;
+  // square and noise are brighter than a sine and are played quieter for a similar loudness
+  private static final float SINE_LEVEL = 1;
+  private static final float SQUARE_LEVEL = 0.6f;
+  private static final float NOISE_LEVEL = 0.8f;
+  private static final double NOISE_Q = 1.5;
+  // fixed seed keeps the noise identical every time it is generated
+  private static final long NOISE_SEED = 0x5EED;
+  // frequencies close to the nyquist frequency would alias
+  private static final double MAX_FREQUENCY_RATIO = 0.45;
+
+  public static float[] synthesize(
+      String waveform, int frequency, int decayMillis, int sampleRate
+  ) {
+    int attackFrames = getFrames(ATTACK_MILLIS, sampleRate);
+    int decayFrames = getFrames(decayMillis, sampleRate);
+    int releaseFrames = getFrames(RELEASE_MILLIS, sampleRate);
+    float[] data = new float[attackFrames + decayFrames + releaseFrames];
+    double freq = Math.min(frequency, sampleRate * MAX_FREQUENCY_RATIO);
+    switch (waveform) {
+      case WAVEFORM.SQUARE:
+        generateSquare(data, freq / sampleRate);
+        break;
+      case WAVEFORM.NOISE:
+        generateNoise(data, freq / sampleRate);
+        break;
+      default:
+        generateSine(data, freq / sampleRate);
+        break;
+    }
+    applyEnvelope(data, attackFrames, decayFrames, releaseFrames);
+    if (waveform.equals(WAVEFORM.NOISE)) {
+      // filtered noise has no fixed amplitude
+      normalize(data, NOISE_LEVEL);
+    }
+    return data;
+  }
+
+  private static void generateSine(float[] data, double increment) {
+    for (int i = 0; i < data.length; i++) {
+      data[i] = SINE_LEVEL * (float) Math.sin(2 * Math.PI * increment * i);
+    }
+  }
+
+  private static void generateSquare(float[] data, double increment) {
+    // polyBLEP smooths the edges to avoid aliasing of the naive square wave
+    double phase = 0;
+    for (int i = 0; i < data.length; i++) {
+      double value = phase < 0.5 ? 1 : -1;
+      value += getPolyBlep(phase, increment);
+      value -= getPolyBlep((phase + 0.5) % 1, increment);
+      data[i] = SQUARE_LEVEL * (float) value;
+      phase += increment;
+      if (phase >= 1) {
+        phase -= 1;
+      }
+    }
+  }
+
+  private static double getPolyBlep(double phase, double increment) {
+    if (phase < increment) {
+      double t = phase / increment;
+      return t + t - t * t - 1;
+    } else if (phase > 1 - increment) {
+      double t = (phase - 1) / increment;
+      return t * t + t + t + 1;
+    } else {
+      return 0;
+    }
+  }
+
+  private static void generateNoise(float[] data, double increment) {
+    // white noise through a band-pass filter centered at the frequency
+    double w0 = 2 * Math.PI * increment;
+    double alpha = Math.sin(w0) / (2 * NOISE_Q);
+    double a0 = 1 + alpha;
+    double b0 = alpha / a0;
+    double b2 = -alpha / a0;
+    double a1 = -2 * Math.cos(w0) / a0;
+    double a2 = (1 - alpha) / a0;
+    Random random = new Random(NOISE_SEED);
+    double x1 = 0, x2 = 0, y1 = 0, y2 = 0;
+    for (int i = 0; i < data.length; i++) {
+      double x = random.nextDouble() * 2 - 1;
+      double y = b0 * x + b2 * x2 - a1 * y1 - a2 * y2;
+      x2 = x1;
+      x1 = x;
+      y2 = y1;
+      y1 = y;
+      data[i] = (float) y;
+    }
+  }
+
+  private static void normalize(float[] data, float level) {
+    float peak = 0;
+    for (float sample : data) {
+      peak = Math.max(peak, Math.abs(sample));
+    }
+    if (peak > 0) {
+      float scale = level / peak;
+      for (int i = 0; i < data.length; i++) {
+        data[i] *= scale;
+      }
+    }
+  }
+
+  private static void applyEnvelope(
+      float[] data, int attackFrames, int decayFrames, int releaseFrames
+  ) {
+    // linear attack, exponential decay towards the sustain level, linear release
+    double decayRate = Math.log(DECAY_FLOOR) / Math.max(1, decayFrames);
+    for (int i = 0; i < data.length; i++) {
+      float level;
+      if (i < attackFrames) {
+        level = (float) (i + 1) / attackFrames;
+      } else if (i < attackFrames + decayFrames) {
+        float decay = (float) Math.exp(decayRate * (i - attackFrames));
+        level = SUSTAIN_LEVEL + (1 - SUSTAIN_LEVEL) * decay;
+      } else {
+        int release = i - attackFrames - decayFrames;
+        float sustain = SUSTAIN_LEVEL + (1 - SUSTAIN_LEVEL) * DECAY_FLOOR;
+        level = sustain * (1 - (float) (release + 1) / releaseFrames);
+      }
+      data[i] *= level;
+    }
+  }
+
+  private static int getFrames(float millis, int sampleRate) {
+    return Math.max(1, Math.round(millis * sampleRate / 1000));
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of Tack Android.
+ *
+ * Tack Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Tack Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Tack Android. If not, see http://www.gnu.org/licenses/.
+ *
+ * Copyright (c) 2020-2024 by Patrick Zedler
+ */
+
+package xyz.zedler.patrick.tack.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class WavUtil {
+
+  private static final int RIFF_HEADER_SIZE = 12;
+  private static final int CHUNK_HEADER_SIZE = 8;
+  private static final int FMT_CHUNK_MIN_SIZE = 16;
+  private static final int FMT_EXTENSIBLE_SIZE = 26;
+  private static final int CHUNK_RIFF = 0x46464952; // "RIFF"
+  private static final int CHUNK_WAVE = 0x45564157; // "WAVE"
+  private static final int CHUNK_FMT = 0x20746d66; // "fmt "
+  private static final int CHUNK_DATA = 0x61746164; // "data"
+  private static final int FORMAT_PCM = 1;
+  private static final int FORMAT_FLOAT = 3;
+  private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+  private static final int HEADER_SIZE = RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE * 2
+      + FMT_CHUNK_MIN_SIZE;
+  // frames converted per write, the written file is never held in memory
+  private static final int WRITE_CHUNK_SIZE = 4096;
+
+  public static float[] readWav(ByteBuffer buffer, int sampleRate) throws IOException {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    int start = buffer.position();
+    if (buffer.remaining() < RIFF_HEADER_SIZE
+        || buffer.getInt(start) != CHUNK_RIFF
+        || buffer.getInt(start + 8) != CHUNK_WAVE) {
+      throw new IOException("Not a RIFF/WAVE file");
+    }
+    int format = -1, channels = 0, bitsPerSample = 0, rate = 0;
+    int position = start + RIFF_HEADER_SIZE;
+    while (position + CHUNK_HEADER_SIZE <= buffer.limit()) {
+      int chunkId = buffer.getInt(position);
+      // sizes are unsigned, some writers leave the data size at zero or the maximum
+      long chunkSize = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+      int chunkStart = position + CHUNK_HEADER_SIZE;
+      int available = buffer.limit() - chunkStart;
+      if (chunkId == CHUNK_FMT) {
+        if (chunkSize < FMT_CHUNK_MIN_SIZE || available < FMT_CHUNK_MIN_SIZE) {
+          throw new IOException("Too short fmt chunk");
+        }
+        format = buffer.getShort(chunkStart) & 0xFFFF;
+        channels = buffer.getShort(chunkStart + 2) & 0xFFFF;
+        rate = buffer.getInt(chunkStart + 4);
+        bitsPerSample = buffer.getShort(chunkStart + 14) & 0xFFFF;
+        if (format == FORMAT_EXTENSIBLE && chunkSize >= FMT_EXTENSIBLE_SIZE) {
+          // the sub-format GUID starts with the actual format code
+          format = buffer.getShort(chunkStart + 24) & 0xFFFF;
+        }
+        boolean isPcm16 = format == FORMAT_PCM && bitsPerSample == 16;
+        boolean isFloat32 = format == FORMAT_FLOAT && bitsPerSample == 32;
+        if (!isPcm16 && !isFloat32) {
+          throw new IOException("Unsupported format " + format + " with " + bitsPerSample + " bit");
+        }
+        if (channels < 1) {
+          throw new IOException("Invalid channel count " + channels);
+        }
+        if (rate <= 0) {
+          throw new IOException("Invalid sample rate " + rate);
+        }
+      } else if (chunkId == CHUNK_DATA) {
+        if (format < 0) {
+          throw new IOException("Data chunk before fmt chunk");
+        }
+        int size = chunkSize == 0 || chunkSize > available ? available : (int) chunkSize;
+        float[] data = readSamples(buffer, chunkStart, size, channels, bitsPerSample);
+        // converted once at load time if the output runs at a different rate
+        return ResampleUtil.resample(data, (double) rate / sampleRate);
+      }
+      // chunks are padded to an even size
+      long next = chunkStart + chunkSize + (chunkSize & 1);
+      if (next > buffer.limit()) {
+        break;
+      }
+      position = (int) next;
+    }
+    throw new IOException("Could not find data chunk");
+  }
+
+  private static float[] readSamples(
+      ByteBuffer buffer, int offset, int size, int channels, int bitsPerSample
+  ) {
+    int bytesPerSample = bitsPerSample / 8;
+    int frameSize = bytesPerSample * channels;
+    float[] data = new float[size / frameSize];
+    // converted straight from the source buffer, multiple channels are mixed down to mono
+    float scale = 1f / channels;
+    for (int i = 0, position = offset; i < data.length; i++) {
+      float sum = 0;
+      for (int channel = 0; channel < channels; channel++, position += bytesPerSample) {
+        if (bitsPerSample == 16) {
+          sum += buffer.getShort(position) / 32768f;
+        } else {
+          sum += buffer.getFloat(position);
+        }
+      }
+      data[i] = sum * scale;
+    }
+    return data;
+  }
+
+  public static class WavWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(
+        Math.max(HEADER_SIZE, WRITE_CHUNK_SIZE * 2)
+    ).order(ByteOrder.LITTLE_ENDIAN);
+    private long dataSize;
+
+    public WavWriter(FileChannel channel, int sampleRate) throws IOException {
+      this.channel = channel;
+      // sizes are unknown until the end, they are updated when closing
+      buffer.clear();
+      buffer.putInt(CHUNK_RIFF).putInt(0).putInt(CHUNK_WAVE);
+      buffer.putInt(CHUNK_FMT).putInt(FMT_CHUNK_MIN_SIZE);
+      buffer.putShort((short) FORMAT_PCM).putShort((short) 1);
+      buffer.putInt(sampleRate).putInt(sampleRate * 2);
+      buffer.putShort((short) 2).putShort((short) 16);
+      buffer.putInt(CHUNK_DATA).putInt(0);
+      buffer.flip();
+      channel.position(0);
+      writeBuffer(-1);
+    }
+
+    public void write(float[] data, int offset, int size) throws IOException {
+      // 16-bit mono, readable by every player
+      for (int end = offset + size; offset < end; ) {
+        int count = Math.min(end - offset, WRITE_CHUNK_SIZE);
+        buffer.clear();
+        for (int i = 0; i < count; i++, offset++) {
+          float sample = Math.max(-1, Math.min(1, data[offset]));
+          buffer.putShort((short) (sample * Short.MAX_VALUE));
+        }
+        buffer.flip();
+        writeBuffer(-1);
+        dataSize += count * 2L;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      buffer.clear();
+      buffer.putInt((int) Math.min(0xFFFFFFFFL, dataSize + HEADER_SIZE - CHUNK_HEADER_SIZE));
+      buffer.flip();
+      writeBuffer(4);
+      buffer.clear();
+      buffer.putInt((int) Math.min(0xFFFFFFFFL, dataSize));
+      buffer.flip();
+      writeBuffer(HEADER_SIZE - 4);
+      channel.force(false);
+    }
+
+    private void writeBuffer(long position) throws IOException {
+      // negative positions append at the current position of the channel
+      while (buffer.hasRemaining()) {
+        if (position < 0) {
+          channel.write(buffer);
+        } else {
+          position += channel.write(buffer, position);
+        }
+      }
+    }
+  }
+}
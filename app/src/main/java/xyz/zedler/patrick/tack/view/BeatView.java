@@ -27,6 +27,8 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.Color;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
 import android.util.AttributeSet;
 import android.view.Gravity;
 import android.widget.FrameLayout;
@@ -38,6 +40,7 @@ import androidx.interpolator.view.animation.FastOutSlowInInterpolator;
 import com.google.android.material.button.MaterialButton;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import xyz.zedler.patrick.tack.Constants;
 import xyz.zedler.patrick.tack.Constants.TICK_TYPE;
 import xyz.zedler.patrick.tack.R;
 import xyz.zedler.patrick.tack.util.ResUtil;
@@ -68,6 +71,11 @@ public class BeatView extends FrameLayout {
       R.drawable.ic_beat_pentagon_outlined_anim,
   };
 
+  // velocities a long press cycles through, from loud to silent
+  private static final int[] VELOCITIES = new int[]{Constants.VELOCITY_MAX, 96, 64, 32, 0};
+  // icons of quieter ticks are faded down to this alpha
+  private static final float ALPHA_MIN = 0.35f;
+
   private static boolean isColorRed(int color) {
     int tolerance = 30;
     int red = Color.red(color);
@@ -83,7 +91,7 @@ public class BeatView extends FrameLayout {
   private MaterialButton button;
   private String tickType;
   private boolean isSubdivision, reduceAnimations;
-  private int index;
+  private int index, velocity = Constants.VELOCITY_MAX;
   private int colorNormal, colorStrong, colorSub, colorMuted;
 
   public BeatView(Context context) {
@@ -252,7 +260,34 @@ public class BeatView extends FrameLayout {
     }
   }
 
+  public void setVelocity(int velocity) {
+    this.velocity = velocity;
+    float fraction = (float) velocity / Constants.VELOCITY_MAX;
+    imageView.setAlpha(ALPHA_MIN + (1 - ALPHA_MIN) * fraction);
+  }
+
+  public int getVelocity() {
+    return velocity;
+  }
+
+  public int nextVelocity() {
+    int next = VELOCITIES[0];
+    for (int value : VELOCITIES) {
+      if (value < velocity) {
+        next = value;
+        break;
+      }
+    }
+    setVelocity(next);
+    beat();
+    return next;
+  }
+
   public void beat() {
+    beat(0);
+  }
+
+  public void beat(long playTime) {
     if (animatorSet != null) {
       animatorSet.pause();
       animatorSet.removeAllListeners();
@@ -285,6 +320,10 @@ public class BeatView extends FrameLayout {
       }
     });
     animatorSet.start();
+    if (VERSION.SDK_INT >= VERSION_CODES.O && playTime > 0) {
+      // catch up if the beat is shown later than it was scheduled
+      animatorSet.setCurrentPlayTime(Math.min(playTime, animatorSet.getTotalDuration()));
+    }
   }
 
   private void updateIconSize(int size) {
@@ -303,6 +342,11 @@ public class BeatView extends FrameLayout {
     button.setEnabled(l != null);
   }
 
+  @Override
+  public void setOnLongClickListener(@Nullable OnLongClickListener l) {
+    button.setOnLongClickListener(l);
+  }
+
   public void setReduceAnimations(boolean reduce) {
     reduceAnimations = reduce;
     iconSizeBeat = UiUtil.dpToPx(getContext(), reduce ? 44 : 32);
@@ -22,19 +22,31 @@ package xyz.zedler.patrick.tack.view;
 import android.content.Context;
 import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.HapticFeedbackConstants;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.animation.RotateAnimation;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import xyz.zedler.patrick.tack.Constants;
 
 public class TempoPickerView extends View implements View.OnTouchListener {
 
+  private static final float FINE_MODE_SLOP = 3;
+
   private boolean isTouchable = true;
   private boolean isTouchStartedInCircle;
+  private boolean isFineMode;
   private double currAngle = 0;
   private double prevAngle;
   private float degreeStorage = 0;
+  private float degreesSinceDown = 0;
+  private final Runnable fineModeRunnable = () -> {
+    // long press before rotating enables decimal steps
+    isFineMode = true;
+    performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+  };
   private OnRotationListener onRotationListener;
   private OnPickListener onPickListener;
 
@@ -99,6 +111,8 @@ public class TempoPickerView extends View implements View.OnTouchListener {
       if (isTouchInsideCircle) {
         onPickListener.onPickDown(x, y);
         currAngle = angle;
+        degreesSinceDown = 0;
+        postDelayed(fineModeRunnable, ViewConfiguration.getLongPressTimeout());
       }
     } else if (event.getAction() == MotionEvent.ACTION_MOVE && isTouchStartedInCircle) {
       prevAngle = currAngle;
@@ -109,6 +123,8 @@ public class TempoPickerView extends View implements View.OnTouchListener {
         || event.getAction() == MotionEvent.ACTION_CANCEL
     ) {
       prevAngle = currAngle = 0;
+      removeCallbacks(fineModeRunnable);
+      isFineMode = false;
       onPickListener.onPickUpOrCancel();
     }
     return true;
@@ -140,20 +156,34 @@ public class TempoPickerView extends View implements View.OnTouchListener {
       onRotationListener.onRotate(degreeDiff);
     }
 
+    if (!isFineMode) {
+      degreesSinceDown += Math.abs(degreeDiff);
+      if (degreesSinceDown > FINE_MODE_SLOP) {
+        removeCallbacks(fineModeRunnable);
+      }
+    }
+
     degreeStorage = degreeStorage + degreeDiff;
     if (degreeStorage > 12) {
-      if (onRotationListener != null) {
-        onRotationListener.onRotate(1);
-      }
+      onRotateStep(1);
       degreeStorage = 0;
     } else if (degreeStorage < -12) {
-      if (onRotationListener != null) {
-        onRotationListener.onRotate(-1);
-      }
+      onRotateStep(-1);
       degreeStorage = 0;
     }
   }
 
+  private void onRotateStep(int direction) {
+    if (onRotationListener == null) {
+      return;
+    }
+    if (isFineMode) {
+      onRotationListener.onRotateFine(direction * Constants.TEMPO_STEP_FINE);
+    } else {
+      onRotationListener.onRotate(direction);
+    }
+  }
+
   private boolean isTouchInsideCircle(float x, float y) {
     float radius = Math.min(getPivotX(), getPivotY());
     double centerX = getPivotX();
@@ -167,6 +197,8 @@ public class TempoPickerView extends View implements View.OnTouchListener {
 
     void onRotate(int tempo);
 
+    void onRotateFine(float tempo);
+
     void onRotate(float degrees);
   }
 